@@ -25,6 +25,14 @@ public class Constants {
     public static class Fluids {
         public static final int BASE_IO = FluidType.BUCKET_VOLUME / 50;
         public static final int CAPACITY = FluidType.BUCKET_VOLUME;
+        /**
+         * How often the fill level of the pipes is sent to the clients, in ticks.
+         */
+        public static final int CLIENT_SYNC_INTERVAL = 10;
+        /**
+         * Number of distinct fill levels that the clients can see.
+         */
+        public static final int CLIENT_LEVELS = 16;
     }
 
     public static class Items {
@@ -18,8 +18,10 @@
  */
 package dev.technici4n.moderndynamics;
 
+import dev.technici4n.moderndynamics.attachment.attached.ItemCachedFilter;
 import dev.technici4n.moderndynamics.attachment.upgrade.AttachmentUpgradesLoader;
 import dev.technici4n.moderndynamics.client.ModernDynamicsClient;
+import dev.technici4n.moderndynamics.debug.NetworkCommand;
 import dev.technici4n.moderndynamics.init.MdAttachments;
 import dev.technici4n.moderndynamics.init.MdBlockEntities;
 import dev.technici4n.moderndynamics.init.MdBlocks;
@@ -33,11 +35,16 @@ import dev.technici4n.moderndynamics.util.MdId;
 import dev.technici4n.moderndynamics.util.MdItemGroup;
 import dev.technici4n.moderndynamics.util.WrenchHelper;
 import net.minecraft.core.registries.Registries;
+import net.minecraft.server.level.ServerLevel;
 import net.neoforged.bus.api.IEventBus;
 import net.neoforged.fml.common.Mod;
 import net.neoforged.fml.loading.FMLLoader;
 import net.neoforged.neoforge.common.NeoForge;
+import net.neoforged.neoforge.event.RegisterCommandsEvent;
+import net.neoforged.neoforge.event.TagsUpdatedEvent;
 import net.neoforged.neoforge.event.TickEvent;
+import net.neoforged.neoforge.event.level.ChunkEvent;
+import net.neoforged.neoforge.event.level.LevelEvent;
 import net.neoforged.neoforge.event.server.ServerStoppedEvent;
 import net.neoforged.neoforge.network.event.RegisterPayloadHandlerEvent;
 import net.neoforged.neoforge.registries.RegisterEvent;
@@ -60,9 +67,27 @@ public class ModernDynamics {
         NeoForge.EVENT_BUS.addListener(TickEvent.ServerTickEvent.class, e -> {
             if (e.phase == TickEvent.Phase.END) {
                 TickHelper.onEndTick();
-                NetworkManager.onEndTick();
             }
         });
+        NeoForge.EVENT_BUS.addListener(TickEvent.LevelTickEvent.class, e -> {
+            if (e.phase == TickEvent.Phase.END && e.level instanceof ServerLevel serverLevel) {
+                NetworkManager.onLevelTick(serverLevel);
+                SimulatedInsertionTargets.onLevelTick(serverLevel);
+            }
+        });
+        NeoForge.EVENT_BUS.addListener(LevelEvent.Unload.class, e -> {
+            if (e.getLevel() instanceof ServerLevel serverLevel) {
+                NetworkManager.onLevelUnloaded(serverLevel);
+                SimulatedInsertionTargets.onLevelUnloaded(serverLevel);
+            }
+        });
+        NeoForge.EVENT_BUS.addListener(ChunkEvent.Load.class, e -> {
+            if (e.getLevel() instanceof ServerLevel serverLevel) {
+                NetworkManager.onChunkLoaded(serverLevel, e.getChunk().getPos());
+            }
+        });
+        NeoForge.EVENT_BUS.addListener(RegisterCommandsEvent.class, e -> NetworkCommand.register(e.getDispatcher()));
+        NeoForge.EVENT_BUS.addListener(TagsUpdatedEvent.class, e -> ItemCachedFilter.onTagsUpdated());
         NeoForge.EVENT_BUS.addListener(WrenchHelper::handleEvent);
         AttachmentUpgradesLoader.setup();
 
@@ -49,8 +49,8 @@ public class IoAttachmentItem extends AttachmentItem {
 
     @Override
     public AttachedAttachment createAttached(NodeHost host, CompoundTag configTag) {
-        if (host instanceof ItemHost) {
-            return new ItemAttachedIo(this, configTag, host.getPipe()::setChanged);
+        if (host instanceof ItemHost itemHost) {
+            return new ItemAttachedIo(this, configTag, host.getPipe()::setChanged, itemHost::onFilterChanged);
         } else {
             return new FluidAttachedIo(this, configTag, host.getPipe()::setChanged);
         }
@@ -65,9 +65,8 @@ public class IoAttachmentItem extends AttachmentItem {
         result.add(Setting.FILTER_SIMILAR);
         switch (type) {
         case FILTER -> {
-            // TODO implement
-            // result.add(Setting.OVERSENDING_MODE);
-            // result.add(Setting.MAX_ITEMS_IN_INVENTORY);
+            result.add(Setting.OVERSENDING_MODE);
+            result.add(Setting.MAX_ITEMS_IN_INVENTORY);
         }
         case EXTRACTOR -> {
             result.add(Setting.MAX_ITEMS_EXTRACTED);
@@ -75,8 +74,7 @@ public class IoAttachmentItem extends AttachmentItem {
         }
         case ATTRACTOR -> {
             result.add(Setting.MAX_ITEMS_EXTRACTED);
-            // TODO implement
-            // result.add(Setting.MAX_ITEMS_IN_INVENTORY);
+            result.add(Setting.MAX_ITEMS_IN_INVENTORY);
             result.add(Setting.ROUTING_MODE);
         }
         }
@@ -26,6 +26,7 @@ import dev.technici4n.moderndynamics.attachment.settings.FilterInversionMode;
 import dev.technici4n.moderndynamics.attachment.settings.RedstoneMode;
 import dev.technici4n.moderndynamics.attachment.upgrade.LoadedUpgrades;
 import dev.technici4n.moderndynamics.attachment.upgrade.UpgradeType;
+import dev.technici4n.moderndynamics.network.TickHelper;
 import dev.technici4n.moderndynamics.pipe.PipeBlockEntity;
 import dev.technici4n.moderndynamics.util.WrenchHelper;
 import java.util.ArrayList;
@@ -44,6 +45,11 @@ public abstract class AttachedIo extends AttachedAttachment {
     private FilterInversionMode filterInversion;
     private RedstoneMode redstoneMode;
     protected final UpgradeContainer upgradeContainer = new UpgradeContainer();
+    /*
+     * Server-side redstone signal cache, see isEnabledViaRedstone.
+     */
+    private long redstoneSignalTick = Long.MIN_VALUE;
+    private boolean redstoneSignal;
 
     public AttachedIo(AttachmentItem item, CompoundTag configData, Runnable setChangedCallback) {
         super(item, configData);
@@ -176,7 +182,18 @@ public abstract class AttachedIo extends AttachedAttachment {
             return true;
         }
 
-        var signal = pipe.getLevel().hasNeighborSignal(pipe.getBlockPos());
+        boolean signal;
+        if (pipe.getLevel().isClientSide()) {
+            signal = pipe.getLevel().hasNeighborSignal(pipe.getBlockPos());
+        } else {
+            // The signal is checked for every path ending at this attachment, only query it once per tick.
+            long currentTick = TickHelper.getTickCounter();
+            if (currentTick != redstoneSignalTick) {
+                redstoneSignalTick = currentTick;
+                redstoneSignal = pipe.getLevel().hasNeighborSignal(pipe.getBlockPos());
+            }
+            signal = redstoneSignal;
+        }
         if (signal) {
             return getRedstoneMode() == RedstoneMode.REQUIRES_HIGH;
         } else {
@@ -19,6 +19,7 @@
 package dev.technici4n.moderndynamics.attachment.attached;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Runnables;
 import dev.technici4n.moderndynamics.Constants;
 import dev.technici4n.moderndynamics.attachment.IoAttachmentItem;
 import dev.technici4n.moderndynamics.attachment.settings.FilterDamageMode;
@@ -35,10 +36,11 @@ import dev.technici4n.moderndynamics.util.DropHelper;
 import dev.technici4n.moderndynamics.util.ExtendedMenuProvider;
 import dev.technici4n.moderndynamics.util.ItemVariant;
 import dev.technici4n.moderndynamics.util.TransferUtil;
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import net.minecraft.core.Direction;
 import net.minecraft.core.NonNullList;
 import net.minecraft.nbt.CompoundTag;
@@ -50,13 +52,22 @@ import net.minecraft.util.Mth;
 import net.minecraft.world.entity.player.Inventory;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.inventory.AbstractContainerMenu;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.neoforged.neoforge.items.IItemHandler;
 import org.jetbrains.annotations.Nullable;
 
 public class ItemAttachedIo extends AttachedIo {
-
-    private final Map<ItemVariant, Integer> stuffedItems = new LinkedHashMap<>();
+    /**
+     * Maximum delay between two operations of an extractor that keeps finding nothing to extract.
+     */
+    private static final int MAX_IDLE_OPERATION_TICK_DELAY = 200;
+    private static final int MAX_IDLE_BACKOFF_STEPS = 8;
+    /**
+     * Maximum delay between two attempts to move the stuffed items out of an attachment.
+     */
+    private static final int MAX_STUFFED_RETRY_DELAY = 200;
+    private final Object2IntLinkedOpenHashMap<ItemVariant> stuffedItems = new Object2IntLinkedOpenHashMap<>();
     private int roundRobinIndex;
 
     private final NonNullList<ItemVariant> filters;
@@ -83,9 +94,35 @@ public class ItemAttachedIo extends AttachedIo {
     // Is lazily initialized when it is needed and reset to null if any of the config changes
     @Nullable
     private ItemCachedFilter cachedFilter;
+    /**
+     * Incremented every time the filter configuration changes.
+     */
+    private int filterVersion = 0;
+    private final Runnable filterChangedCallback;
+    /**
+     * Number of consecutive operations that didn't find anything to extract, used to poll idle sources less often.
+     */
+    private int idleOperations = 0;
+    /**
+     * Fingerprint of the source inventory after the last idle operation.
+     */
+    private int idleSourceFingerprint = 0;
+    /**
+     * Number of consecutive attempts that failed to move any stuffed item, and the tick of the next attempt.
+     */
+    private int failedStuffedRetries = 0;
+    private long nextStuffedRetryTick = Long.MIN_VALUE;
 
     public ItemAttachedIo(IoAttachmentItem item, CompoundTag configData, Runnable setChangedCallback) {
+        this(item, configData, setChangedCallback, Runnables.doNothing());
+    }
+
+    /**
+     * @param filterChangedCallback Called every time the filter configuration changes.
+     */
+    public ItemAttachedIo(IoAttachmentItem item, CompoundTag configData, Runnable setChangedCallback, Runnable filterChangedCallback) {
         super(item, configData, setChangedCallback);
+        this.filterChangedCallback = filterChangedCallback;
 
         this.filters = NonNullList.withSize(Constants.Upgrades.MAX_FILTER, ItemVariant.blank());
         var filterTags = configData.getList("filters", CompoundTag.TAG_COMPOUND);
@@ -157,9 +194,9 @@ public class ItemAttachedIo extends AttachedIo {
         }
 
         var stuffedTag = new ListTag();
-        for (var entry : stuffedItems.entrySet()) {
+        for (var entry : stuffedItems.object2IntEntrySet()) {
             var compound = entry.getKey().toNbt();
-            compound.putInt("#a", entry.getValue());
+            compound.putInt("#a", entry.getIntValue());
             stuffedTag.add(compound);
         }
         if (!stuffedTag.isEmpty()) {
@@ -208,6 +245,50 @@ public class ItemAttachedIo extends AttachedIo {
         return upgradeContainer.getItemOperationTickDelay();
     }
 
+    /**
+     * Return the delay until the next operation, taking into account the backoff after idle operations.
+     */
+    public int getEffectiveItemOperationTickDelay() {
+        int delay = getItemOperationTickDelay();
+        if (idleOperations == 0) {
+            return delay;
+        }
+        return Math.max(delay, Math.min(delay << idleOperations, MAX_IDLE_OPERATION_TICK_DELAY));
+    }
+
+    /**
+     * Record the result of an extraction: each idle operation doubles the delay until the next one, up to a cap.
+     *
+     * @param sourceFingerprint Fingerprint of the source inventory, only used if the operation was idle.
+     */
+    public void onItemOperation(boolean idle, int sourceFingerprint) {
+        if (idle) {
+            idleOperations = Math.min(idleOperations + 1, MAX_IDLE_BACKOFF_STEPS);
+            idleSourceFingerprint = sourceFingerprint;
+        } else {
+            idleOperations = 0;
+        }
+    }
+
+    /**
+     * Return true if the source inventory changed since the last idle operation, in which case the backoff is reset.
+     */
+    public boolean checkIdleSourceFingerprint(int sourceFingerprint) {
+        if (idleOperations > 0 && sourceFingerprint != idleSourceFingerprint) {
+            resetIdleBackoff();
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isIdleBackoffActive() {
+        return idleOperations > 0;
+    }
+
+    public void resetIdleBackoff() {
+        idleOperations = 0;
+    }
+
     @Override
     public boolean hasMenu() {
         return true;
@@ -245,8 +326,8 @@ public class ItemAttachedIo extends AttachedIo {
     @Override
     public List<ItemStack> getDrops() {
         var drops = new ArrayList<>(super.getDrops());
-        for (var entry : stuffedItems.entrySet()) {
-            DropHelper.splitIntoStacks(entry.getKey(), entry.getValue(), drops::add);
+        for (var entry : stuffedItems.object2IntEntrySet()) {
+            DropHelper.splitIntoStacks(entry.getKey(), entry.getIntValue(), drops::add);
         }
         return drops;
     }
@@ -258,10 +339,38 @@ public class ItemAttachedIo extends AttachedIo {
     /**
      * Returns the raw map of stuffed items, be careful.
      */
-    public Map<ItemVariant, Integer> getStuffedItems() {
+    public Object2IntMap<ItemVariant> getStuffedItems() {
         return stuffedItems;
     }
 
+    /**
+     * Return true if the stuffed items should be moved out during this tick.
+     * Failed attempts double the delay until the next one, since a blockage usually lasts a while.
+     */
+    public boolean isStuffedRetryDue(long currentTick) {
+        return currentTick >= nextStuffedRetryTick;
+    }
+
+    public void onStuffedRetry(boolean moved, long currentTick) {
+        if (moved) {
+            failedStuffedRetries = 0;
+            nextStuffedRetryTick = Long.MIN_VALUE;
+        } else {
+            failedStuffedRetries = Math.min(failedStuffedRetries + 1, MAX_IDLE_BACKOFF_STEPS);
+            int delay = getItemOperationTickDelay();
+            nextStuffedRetryTick = currentTick + Math.max(delay, Math.min(delay << failedStuffedRetries, MAX_STUFFED_RETRY_DELAY));
+        }
+    }
+
+    /**
+     * Retry moving the stuffed items at the next operation, for example because the target might accept them now.
+     */
+    public void wakeStuffed() {
+        failedStuffedRetries = 0;
+        nextStuffedRetryTick = Long.MIN_VALUE;
+        resetIdleBackoff();
+    }
+
     public FilterDamageMode getFilterDamage() {
         return filterDamage;
     }
@@ -312,6 +421,7 @@ public class ItemAttachedIo extends AttachedIo {
 
     public void setRoutingMode(RoutingMode mode) {
         this.routingMode = mode;
+        resetIdleBackoff();
     }
 
     public OversendingMode getOversendingMode() {
@@ -320,6 +430,7 @@ public class ItemAttachedIo extends AttachedIo {
 
     public void setOversendingMode(OversendingMode mode) {
         this.oversendingMode = mode;
+        resetIdleBackoff();
     }
 
     public int getMaxItemsInInventory() {
@@ -328,6 +439,7 @@ public class ItemAttachedIo extends AttachedIo {
 
     public void setMaxItemsInInventory(int value) {
         this.maxItemsInInventory = Mth.clamp(value, 0, Integer.MAX_VALUE);
+        resetIdleBackoff();
     }
 
     public int getMaxItemsExtracted() {
@@ -338,6 +450,7 @@ public class ItemAttachedIo extends AttachedIo {
         this.maxItemsExtracted = Mth.clamp(value, 1, getMaxItemsExtractedMaximum());
 
         this.maxItemsExtractedAtMax = maxItemsExtracted == getMaxItemsExtractedMaximum();
+        resetIdleBackoff();
     }
 
     public int getMaxItemsExtractedMaximum() {
@@ -345,13 +458,18 @@ public class ItemAttachedIo extends AttachedIo {
     }
 
     private ItemCachedFilter getCachedFilter() {
+        if (this.cachedFilter != null && this.cachedFilter.isOutdated()) {
+            // Matches might have changed with the tags.
+            resetCachedFilter();
+        }
         if (this.cachedFilter == null) {
             this.cachedFilter = new ItemCachedFilter(
                     this.filters.subList(0, getFilterSize()),
                     getFilterInversion(),
                     this.filterDamage,
                     getFilterNbt(),
-                    this.filterMod);
+                    this.filterMod,
+                    this.filterSimilar);
         }
         return this.cachedFilter;
     }
@@ -359,6 +477,25 @@ public class ItemAttachedIo extends AttachedIo {
     @Override
     protected void resetCachedFilter() {
         this.cachedFilter = null;
+        this.filterVersion++;
+        filterChangedCallback.run();
+        resetIdleBackoff();
+    }
+
+    /**
+     * Return the only items that the filter can possibly match, or null if it might match any item.
+     */
+    @Nullable
+    public Set<Item> getMatchableItems() {
+        return getCachedFilter().getMatchableItems();
+    }
+
+    /**
+     * Return a number that changes every time the filter configuration changes,
+     * to allow invalidating information that depends on the filter.
+     */
+    public int getFilterVersion() {
+        return filterVersion;
     }
 
     public int getRoundRobinIndex(int maxValue) {
@@ -381,9 +518,9 @@ public class ItemAttachedIo extends AttachedIo {
     public int moveStuffedToStorage(IItemHandler targetStorage, int maxAmount) {
         int totalMoved = 0;
 
-        for (var it = stuffedItems.entrySet().iterator(); it.hasNext() && totalMoved < maxAmount;) {
+        for (var it = stuffedItems.object2IntEntrySet().fastIterator(); it.hasNext() && totalMoved < maxAmount;) {
             var entry = it.next();
-            int stuffedAmount = entry.getValue();
+            int stuffedAmount = entry.getIntValue();
             int inserted = TransferUtil.insertItemStacked(targetStorage, entry.getKey(), Math.min(stuffedAmount, maxAmount - totalMoved));
 
             if (inserted > 0) {
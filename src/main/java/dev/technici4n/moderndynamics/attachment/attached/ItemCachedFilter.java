@@ -22,45 +22,88 @@ import dev.technici4n.moderndynamics.attachment.settings.FilterDamageMode;
 import dev.technici4n.moderndynamics.attachment.settings.FilterInversionMode;
 import dev.technici4n.moderndynamics.attachment.settings.FilterModMode;
 import dev.technici4n.moderndynamics.attachment.settings.FilterNbtMode;
+import dev.technici4n.moderndynamics.attachment.settings.FilterSimilarMode;
 import dev.technici4n.moderndynamics.util.FluidVariant;
 import dev.technici4n.moderndynamics.util.ItemVariant;
+import it.unimi.dsi.fastutil.objects.Object2BooleanLinkedOpenHashMap;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.tags.TagKey;
 import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
-import org.apache.commons.lang3.NotImplementedException;
 import org.jetbrains.annotations.Nullable;
 
+/**
+ * Item filter, compiled from the filter configuration of an attachment.
+ * A new instance is created every time the configuration changes, or when the item tags are reloaded.
+ */
 public final class ItemCachedFilter {
+    /**
+     * Maximum number of variants whose result is remembered by each filter.
+     */
+    private static final int MAX_MEMOIZED_VARIANTS = 64;
+    /**
+     * Incremented every time the tags are reloaded, on the server or on the client.
+     */
+    private static volatile int tagsVersion = 0;
+
     private final Set<ItemVariant> listedVariants;
     private final Set<Item> listedItems;
+    /**
+     * Registry ids of the listed items.
+     */
+    private final BitSet listedItemIds = new BitSet();
     private final FilterInversionMode filterInversion;
     private final FilterDamageMode filterDamage;
     private final FilterNbtMode filterNbt;
     private final FilterModMode filterMod;
+    private final FilterSimilarMode filterSimilar;
+    private final int compiledTagsVersion = tagsVersion;
 
     /**
-     * Lists mod IDs in case mod-id based filtering is enabled.
+     * Namespaces of the listed mods in case mod-id based filtering is enabled.
      * This supersedes/replaces filtering by explicit items or fluids.
      * It is always null otherwise.
      */
     @Nullable
-    private Set<String> listedMods;
+    private final Set<String> listedMods;
+    /**
+     * Tags of the listed items in case similar items are included. It is always null otherwise.
+     */
+    @Nullable
+    private final Set<TagKey<Item>> similarTags;
+    /**
+     * Tag data of the listed variants, for each item, in case tag data is matched but damage is ignored.
+     * It is always null otherwise.
+     */
+    @Nullable
+    private final Map<Item, List<CompoundTag>> listedTagsByItem;
+    /**
+     * Results of the recent slow matches. Matching only by item is fast enough not to need it.
+     */
+    @Nullable
+    private final Object2BooleanLinkedOpenHashMap<ItemVariant> memoizedMatches;
 
     public ItemCachedFilter(List<ItemVariant> filterConfig,
             FilterInversionMode filterInversion,
             FilterDamageMode filterDamage,
             FilterNbtMode filterNbt,
-            FilterModMode filterMod) {
+            FilterModMode filterMod,
+            FilterSimilarMode filterSimilar) {
         this.filterInversion = filterInversion;
         this.filterDamage = filterDamage;
         this.filterNbt = filterNbt;
         this.filterMod = filterMod;
+        this.filterSimilar = filterSimilar;
 
         // Dedupe and drop blanks
         this.listedVariants = new HashSet<>(filterConfig.size());
@@ -69,85 +112,152 @@ public final class ItemCachedFilter {
             if (!variant.isBlank()) {
                 this.listedVariants.add(variant);
                 this.listedItems.add(variant.getItem());
+                this.listedItemIds.set(BuiltInRegistries.ITEM.getId(variant.getItem()));
             }
         }
-    }
 
-    private boolean isItemListed(ItemVariant variant) {
-        // Return value if the variant is included
-        boolean itemIsListed = false;
-
-        // When inclusion of all listed mods is enabled, matching by individual item/NBT/damage is pointless
         if (filterMod == FilterModMode.INCLUDE_ALL_OF_MOD) {
-            if (getListedMods().contains(getModId(variant))) {
-                itemIsListed = true;
+            this.listedMods = new HashSet<>();
+            for (var item : listedItems) {
+                this.listedMods.add(getNamespace(item));
             }
         } else {
-            if (filterNbt == FilterNbtMode.RESPECT_NBT) {
-                itemIsListed = listedVariants.contains(variant);
-            } else {
-                itemIsListed = listedItems.contains(variant.getItem());
+            this.listedMods = null;
+        }
+
+        if (filterSimilar == FilterSimilarMode.INCLUDE_SIMILAR && listedMods == null) {
+            this.similarTags = new HashSet<>();
+            for (var item : listedItems) {
+                item.builtInRegistryHolder().tags().forEach(similarTags::add);
             }
+        } else {
+            this.similarTags = null;
+        }
+
+        if (filterNbt == FilterNbtMode.RESPECT_NBT && filterDamage == FilterDamageMode.IGNORE_DAMAGE && listedMods == null) {
+            this.listedTagsByItem = new IdentityHashMap<>();
+            for (var variant : listedVariants) {
+                listedTagsByItem.computeIfAbsent(variant.getItem(), item -> new ArrayList<>()).add(variant.nbt());
+            }
+        } else {
+            this.listedTagsByItem = null;
+        }
+
+        boolean itemOnly = listedMods == null && similarTags == null && filterNbt != FilterNbtMode.RESPECT_NBT;
+        this.memoizedMatches = itemOnly ? null : new Object2BooleanLinkedOpenHashMap<>();
+    }
 
-            // Possibly handle matching damage too
+    private boolean isItemListed(ItemVariant variant) {
+        // When inclusion of all listed mods is enabled, matching by individual item/NBT/damage is pointless
+        if (listedMods != null) {
+            return listedMods.contains(getNamespace(variant.getItem()));
         }
 
-        // The "ore dictionary" search could treat an otherwise unlisted item as listed based on its tags
-        if (!itemIsListed) {
+        boolean itemIsListed;
+        if (filterNbt == FilterNbtMode.RESPECT_NBT) {
+            if (listedTagsByItem != null) {
+                itemIsListed = false;
+                var listedTags = listedTagsByItem.get(variant.getItem());
+                if (listedTags != null) {
+                    for (var listedTag : listedTags) {
+                        if (matchIgnoringDamage(listedTag, variant.nbt())) {
+                            itemIsListed = true;
+                            break;
+                        }
+                    }
+                }
+            } else {
+                itemIsListed = listedVariants.contains(variant);
+            }
+        } else {
+            itemIsListed = listedItemIds.get(BuiltInRegistries.ITEM.getId(variant.getItem()));
+        }
 
+        // The "ore dictionary" search treats an otherwise unlisted item as listed if it shares a tag with a listed item
+        if (!itemIsListed && similarTags != null && !similarTags.isEmpty()) {
+            itemIsListed = variant.getItem().builtInRegistryHolder().tags().anyMatch(similarTags::contains);
         }
 
         return itemIsListed;
     }
 
     public boolean matchesItem(ItemVariant variant) {
-        return isItemListed(variant) == (filterInversion == FilterInversionMode.WHITELIST);
-    }
+        if (memoizedMatches == null) {
+            return isItemListed(variant) == (filterInversion == FilterInversionMode.WHITELIST);
+        }
 
-    private Set<String> getListedMods() {
-        if (listedMods == null) {
-            listedMods = new HashSet<>();
-            for (var variant : listedVariants) {
-                listedMods.add(getModId(variant));
-            }
+        // Recently used entries are moved to the end, so that the least recently used entry is evicted first.
+        if (memoizedMatches.containsKey(variant)) {
+            return memoizedMatches.getAndMoveToLast(variant);
+        }
+
+        boolean matches = isItemListed(variant) == (filterInversion == FilterInversionMode.WHITELIST);
+        if (memoizedMatches.size() >= MAX_MEMOIZED_VARIANTS) {
+            memoizedMatches.removeFirstBoolean();
         }
+        memoizedMatches.put(variant, matches);
+        return matches;
+    }
 
-        return listedMods;
+    /**
+     * Return the only items that this filter can possibly match, or null if it might match any item.
+     */
+    @Nullable
+    public Set<Item> getMatchableItems() {
+        if (filterInversion == FilterInversionMode.WHITELIST && listedMods == null && similarTags == null) {
+            return Collections.unmodifiableSet(listedItems);
+        }
+        return null;
     }
 
     public boolean matchesFluid(FluidVariant variant) {
         return false;
     }
 
-    private static String getModId(ItemVariant variant) {
-        // This returns "minecraft" if the item is unregistered
-        return BuiltInRegistries.ITEM.getKey(variant.getItem()).getNamespace();
+    /**
+     * Return true if the tags were reloaded since this filter was compiled, in which case it must be compiled again.
+     */
+    public boolean isOutdated() {
+        return compiledTagsVersion != tagsVersion;
     }
 
-    private static String getModId(FluidVariant variant) {
-        // This returns "minecraft" if the item is unregistered
-        return BuiltInRegistries.FLUID.getKey(variant.getFluid()).getNamespace();
+    public static void onTagsUpdated() {
+        tagsVersion++;
     }
 
-    private static boolean matchDamageIgnoreRest(@Nullable CompoundTag a, @Nullable CompoundTag b) {
-        return getDamage(a) == getDamage(b);
+    private static String getNamespace(Item item) {
+        // This returns "minecraft" if the item is unregistered
+        return BuiltInRegistries.ITEM.getKey(item).getNamespace();
     }
 
+    /**
+     * Compare tag data, ignoring the damage.
+     */
     private static boolean matchIgnoringDamage(@Nullable CompoundTag a, @Nullable CompoundTag b) {
         if (a == b) {
             return true;
         }
 
-        throw new NotImplementedException();
-
-    }
+        int aSize = countKeysIgnoringDamage(a);
+        if (aSize != countKeysIgnoringDamage(b)) {
+            return false;
+        }
+        if (aSize == 0) {
+            return true;
+        }
 
-    private static int getDamage(CompoundTag tag) {
-        return tag == null ? 0 : tag.getInt(ItemStack.TAG_DAMAGE);
+        for (var key : a.getAllKeys()) {
+            if (!key.equals(ItemStack.TAG_DAMAGE) && !Objects.equals(a.get(key), b.get(key))) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    @FunctionalInterface
-    interface NbtMatcher {
-        boolean matches(@Nullable CompoundTag a, @Nullable CompoundTag b);
+    private static int countKeysIgnoringDamage(@Nullable CompoundTag tag) {
+        if (tag == null) {
+            return 0;
+        }
+        return tag.contains(ItemStack.TAG_DAMAGE) ? tag.size() - 1 : tag.size();
     }
 }
@@ -23,4 +23,5 @@ public enum RoutingMode {
     FURTHEST,
     RANDOM,
     ROUND_ROBIN,
+    BALANCED,
 }
@@ -76,7 +76,8 @@ public class CycleSettingButton<T> extends Button {
             new CycleSetting<>(RoutingMode.CLOSEST, Component.translatable("gui.moderndynamics.setting.routing_mode.closest"), 216, 196),
             new CycleSetting<>(RoutingMode.FURTHEST, Component.translatable("gui.moderndynamics.setting.routing_mode.furthest"), 20, 204),
             new CycleSetting<>(RoutingMode.RANDOM, Component.translatable("gui.moderndynamics.setting.routing_mode.random"), 40, 204),
-            new CycleSetting<>(RoutingMode.ROUND_ROBIN, Component.translatable("gui.moderndynamics.setting.routing_mode.round_robin"), 60, 204));
+            new CycleSetting<>(RoutingMode.ROUND_ROBIN, Component.translatable("gui.moderndynamics.setting.routing_mode.round_robin"), 60, 204),
+            new CycleSetting<>(RoutingMode.BALANCED, Component.translatable("gui.moderndynamics.setting.routing_mode.balanced"), 140, 204));
 
     public static final List<CycleSetting<OversendingMode>> OVERSENDING_MODE = ImmutableList.of(
             new CycleSetting<>(OversendingMode.PREVENT_OVERSENDING,
@@ -18,6 +18,7 @@
  */
 package dev.technici4n.moderndynamics.client.screen;
 
+import dev.technici4n.moderndynamics.attachment.IoAttachmentType;
 import dev.technici4n.moderndynamics.attachment.Setting;
 import dev.technici4n.moderndynamics.attachment.settings.FilterNbtMode;
 import dev.technici4n.moderndynamics.attachment.settings.OversendingMode;
@@ -197,6 +198,17 @@ public class ItemAttachedIoScreen extends AttachedIoScreen<ItemAttachedIoMenu> {
         maxItemsExtractedTooltipRect = rect;
     }
 
+    @Override
+    protected void renderLabels(GuiGraphics guiGraphics, int mouseX, int mouseY) {
+        super.renderLabels(guiGraphics, mouseX, mouseY);
+
+        // Render the current delay between operations, which grows while an extractor finds nothing to extract
+        if (menu.attachment.getType() == IoAttachmentType.EXTRACTOR) {
+            var text = Component.translatable("gui.moderndynamics.setting.operation_delay", menu.getEffectiveOperationTickDelay());
+            guiGraphics.drawString(font, text, imageWidth - 8 - font.width(text), inventoryLabelY, 0x404040, false);
+        }
+    }
+
     private Component getMaxItemsInInventoryText() {
         if (menu.getMaxItemsInInventory() <= 0) {
             return Component.translatable("gui.moderndynamics.setting.max_items_in_inventory.infinite");
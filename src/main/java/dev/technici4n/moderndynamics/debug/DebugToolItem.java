@@ -19,8 +19,10 @@
 package dev.technici4n.moderndynamics.debug;
 
 import dev.technici4n.moderndynamics.network.NetworkCache;
+import dev.technici4n.moderndynamics.network.NetworkManager;
 import dev.technici4n.moderndynamics.network.NetworkNode;
 import dev.technici4n.moderndynamics.network.NodeHost;
+import dev.technici4n.moderndynamics.network.item.SimulatedInsertionTargets;
 import dev.technici4n.moderndynamics.pipe.PipeBlockEntity;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerLevel;
@@ -59,6 +61,11 @@ public class DebugToolItem extends Item {
                     message.append("No node found.\n");
                 }
 
+                NetworkManager.appendLevelDebugInfo((ServerLevel) pipe.getLevel(), message);
+                message.append("Simulated insertion targets = ")
+                        .append(SimulatedInsertionTargets.getTargetCount((ServerLevel) pipe.getLevel()))
+                        .append('\n');
+
                 ctx.getPlayer().displayClientMessage(Component.literal(message.toString()), false);
 
                 return InteractionResult.CONSUME;
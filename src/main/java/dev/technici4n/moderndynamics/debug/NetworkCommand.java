@@ -0,0 +1,69 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.debug;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import dev.technici4n.moderndynamics.network.NetworkManager;
+import dev.technici4n.moderndynamics.util.MdId;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.commands.arguments.DimensionArgument;
+import net.minecraft.network.chat.Component;
+
+/**
+ * {@code /moderndynamics networks}: enable, disable or limit the ticking of pipe networks per dimension.
+ */
+public class NetworkCommand {
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal(MdId.MOD_ID)
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.literal("networks")
+                        .then(Commands.literal("enable")
+                                .then(Commands.argument("dimension", DimensionArgument.dimension())
+                                        .executes(ctx -> setEnabled(ctx, true))))
+                        .then(Commands.literal("disable")
+                                .then(Commands.argument("dimension", DimensionArgument.dimension())
+                                        .executes(ctx -> setEnabled(ctx, false))))
+                        .then(Commands.literal("budget")
+                                .then(Commands.argument("dimension", DimensionArgument.dimension())
+                                        .then(Commands.argument("microseconds", IntegerArgumentType.integer(0))
+                                                .executes(NetworkCommand::setBudget))))));
+    }
+
+    private static int setEnabled(CommandContext<CommandSourceStack> ctx, boolean enabled) throws CommandSyntaxException {
+        var dimension = DimensionArgument.getDimension(ctx, "dimension").dimension();
+        NetworkManager.setLevelEnabled(dimension, enabled);
+        ctx.getSource().sendSuccess(() -> Component.literal((enabled ? "Enabled" : "Disabled") + " pipe networks in " + dimension.location()),
+                true);
+        return 1;
+    }
+
+    private static int setBudget(CommandContext<CommandSourceStack> ctx) throws CommandSyntaxException {
+        var dimension = DimensionArgument.getDimension(ctx, "dimension").dimension();
+        int micros = IntegerArgumentType.getInteger(ctx, "microseconds");
+        NetworkManager.setLevelTickBudget(dimension, micros * 1000L);
+        ctx.getSource().sendSuccess(() -> Component.literal(micros == 0
+                ? "Removed the tick budget of pipe networks in " + dimension.location()
+                : "Set the tick budget of pipe networks in " + dimension.location() + " to " + micros + " microseconds"), true);
+        return 1;
+    }
+}
@@ -36,6 +36,10 @@ import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.inventory.ClickType;
 
 public class ItemAttachedIoMenu extends AttachedIoMenu<ItemAttachedIo> {
+    /**
+     * Only tracked by the server, synced to the client.
+     */
+    private int effectiveOperationTickDelay;
 
     public ItemAttachedIoMenu(int syncId, Inventory playerInventory, PipeBlockEntity pipe, Direction side, ItemAttachedIo attachment) {
         super(MdMenus.ITEM_IO, syncId, playerInventory, pipe, side, attachment);
@@ -55,6 +59,7 @@ public class ItemAttachedIoMenu extends AttachedIoMenu<ItemAttachedIo> {
         syncShort(this::getMaxItemsInInventory, this::setMaxItemsInInventory);
 
         syncEnum(RoutingMode.class, this::getRoutingMode, this::setRoutingMode);
+        syncShort(this::getEffectiveOperationTickDelay, (value, sendPacket) -> effectiveOperationTickDelay = value);
     }
 
     @Override
@@ -188,6 +193,10 @@ public class ItemAttachedIoMenu extends AttachedIoMenu<ItemAttachedIo> {
         return attachment.getMaxItemsExtractedMaximum();
     }
 
+    public int getEffectiveOperationTickDelay() {
+        return isClientSide() ? effectiveOperationTickDelay : attachment.getEffectiveItemOperationTickDelay();
+    }
+
     public void setFilter(int configIdx, ItemVariant variant, boolean sendPacket) {
         if (isClientSide() && sendPacket) {
             MdPackets.sendSetFilter(containerId, configIdx, variant);
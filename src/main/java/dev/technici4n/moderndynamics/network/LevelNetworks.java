@@ -0,0 +1,417 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.network;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import java.util.*;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The nodes and networks of a given cache class in a single level.
+ */
+class LevelNetworks<H extends NodeHost, C extends NetworkCache<H, C>> {
+    final ServerLevel level;
+    private final NetworkCache.Factory<H, C> cacheFactory;
+    private final Long2ObjectOpenHashMap<NetworkNode<H, C>> nodes = new Long2ObjectOpenHashMap<>();
+    private final Set<NetworkNode<H, C>> pendingUpdates = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Network<H, C>> networks = Collections.newSetFromMap(new IdentityHashMap<>());
+    /**
+     * Dormant nodes, indexed by chunk position.
+     */
+    private final Long2ObjectOpenHashMap<List<NetworkNode<H, C>>> dormantNodes = new Long2ObjectOpenHashMap<>();
+    private final List<ChunkCheck> pendingChunkChecks = new ArrayList<>();
+    private boolean iteratingOverNetworks = false;
+    /**
+     * Order in which the networks are ticked, rebuilt when {@link #networks} changes.
+     * Ticking resumes from {@link #tickCursor} when the tick budget of the level was exceeded.
+     */
+    private final List<Network<H, C>> tickOrder = new ArrayList<>();
+    private boolean tickOrderDirty = false;
+    private int tickCursor = 0;
+    // Accounting, for the debug tool
+    private long lastTickNanos = 0;
+    private int lastDeferredNetworks = 0;
+
+    LevelNetworks(ServerLevel level, NetworkCache.Factory<H, C> cacheFactory) {
+        this.level = level;
+        this.cacheFactory = cacheFactory;
+    }
+
+    boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    void addNode(BlockPos pos, H host) {
+        if (iteratingOverNetworks) {
+            throw new ConcurrentModificationException(
+                    "Node at position " + pos + " in world " + level + " can't be added: networks are being iterated over.");
+        }
+
+        @Nullable
+        NetworkNode<H, C> existingNode = nodes.get(pos.asLong());
+
+        if (existingNode != null) {
+            if (!existingNode.isDormant()) {
+                throw new IllegalArgumentException("Node at position " + pos + " in world " + level + " already exists.");
+            }
+
+            if (tryReloadNode(existingNode, host)) {
+                return;
+            }
+
+            // The surroundings of the node changed while it was dormant: drop it and add the host from scratch.
+            detachNode(existingNode);
+        }
+
+        NetworkNode<H, C> newNode = new NetworkNode<>(pos, host);
+        nodes.put(pos.asLong(), newNode);
+
+        pendingUpdates.add(newNode);
+
+        for (Direction direction : Direction.values()) {
+            BlockPos adjacentPos = pos.relative(direction);
+            @Nullable
+            NetworkNode<H, C> adjacentNode = nodes.get(adjacentPos.asLong());
+
+            // Dormant nodes are only connected to when they get loaded again.
+            if (adjacentNode != null && !adjacentNode.isDormant()) {
+                if (host.canConnectTo(direction, adjacentNode.getHost())
+                        && adjacentNode.getHost().canConnectTo(direction.getOpposite(), host)) {
+                    if (adjacentNode.network != null) {
+                        // The network of the adjacent node may be null during loading.
+                        adjacentNode.network.cache.separate();
+                    }
+
+                    newNode.addConnection(direction, adjacentNode);
+                    adjacentNode.addConnection(direction.getOpposite(), newNode);
+                    adjacentNode.updateHostConnections();
+                } else {
+                    newNode.getHost().onConnectionRejectedTo(direction, adjacentNode.getHost());
+                    adjacentNode.getHost().onConnectionRejectedTo(direction.getOpposite(), newNode.getHost());
+                }
+            }
+        }
+
+        newNode.updateHostConnections();
+    }
+
+    void removeNode(BlockPos pos, H host) {
+        if (iteratingOverNetworks) {
+            throw new ConcurrentModificationException(
+                    "Node at position " + pos + " in world " + level + " can't be removed: networks are being iterated over.");
+        }
+
+        NetworkNode<H, C> node = nodes.get(pos.asLong());
+
+        if (node == null) {
+            throw new IllegalArgumentException("Node at position " + pos + " in world " + level + " can't be removed: it doesn't exist.");
+        }
+
+        if (node.getHost() != host) {
+            throw new IllegalArgumentException("Node at position " + pos + " in world " + level + " can't be removed: the hosts don't match.");
+        }
+
+        detachNode(node);
+    }
+
+    void unloadNode(BlockPos pos, H host) {
+        if (iteratingOverNetworks) {
+            throw new ConcurrentModificationException(
+                    "Node at position " + pos + " in world " + level + " can't be unloaded: networks are being iterated over.");
+        }
+
+        NetworkNode<H, C> node = nodes.get(pos.asLong());
+
+        if (node == null) {
+            throw new IllegalArgumentException("Node at position " + pos + " in world " + level + " can't be unloaded: it doesn't exist.");
+        }
+
+        if (node.getHost() != host) {
+            throw new IllegalArgumentException("Node at position " + pos + " in world " + level + " can't be unloaded: the hosts don't match.");
+        }
+
+        if (node.network != null) {
+            node.network.cache.separate();
+            node.network.cache.onNodeUnloaded(node, host);
+        }
+
+        node.bindHost(null);
+        dormantNodes.computeIfAbsent(ChunkPos.asLong(pos), p -> new ArrayList<>()).add(node);
+    }
+
+    @Nullable
+    NetworkNode<H, C> findNode(BlockPos pos) {
+        updateNetworks();
+
+        @Nullable
+        NetworkNode<H, C> node = nodes.get(pos.asLong());
+        return node == null || node.isDormant() ? null : node;
+    }
+
+    /**
+     * Try to bind a new host to a dormant node. This only succeeds if the node would have the same connections
+     * if it was added from scratch, in which case the network and its cache can be kept as-is.
+     */
+    private boolean tryReloadNode(NetworkNode<H, C> node, H host) {
+        for (Direction direction : Direction.values()) {
+            @Nullable
+            NetworkNode<H, C> adjacentNode = nodes.get(node.pos.relative(direction).asLong());
+
+            if (adjacentNode == null) {
+                if (node.hasConnection(direction)) {
+                    return false;
+                }
+            } else if (!adjacentNode.isDormant()) {
+                boolean canConnect = host.canConnectTo(direction, adjacentNode.getHost())
+                        && adjacentNode.getHost().canConnectTo(direction.getOpposite(), host);
+
+                if (canConnect != node.hasConnection(direction)) {
+                    return false;
+                }
+            }
+            // Connections to dormant nodes are kept as they are.
+        }
+
+        if (node.network != null) {
+            node.network.cache.separate();
+        }
+
+        node.bindHost(host);
+        removeDormantNode(node);
+
+        for (Direction direction : Direction.values()) {
+            @Nullable
+            NetworkNode<H, C> adjacentNode = nodes.get(node.pos.relative(direction).asLong());
+
+            if (adjacentNode != null && !adjacentNode.isDormant()) {
+                if (node.hasConnection(direction)) {
+                    host.onConnectedTo(adjacentNode.getHost());
+                } else {
+                    host.onConnectionRejectedTo(direction, adjacentNode.getHost());
+                    adjacentNode.getHost().onConnectionRejectedTo(direction.getOpposite(), host);
+                }
+            }
+        }
+
+        node.updateHostConnections();
+
+        if (node.network != null) {
+            node.network.cache.onNodeReloaded(node, host);
+        }
+
+        return true;
+    }
+
+    /**
+     * Remove a node from the graph, and schedule a rebuild of the networks of its neighbors.
+     */
+    private void detachNode(NetworkNode<H, C> node) {
+        nodes.remove(node.pos.asLong());
+
+        if (node.isDormant()) {
+            removeDormantNode(node);
+        }
+
+        if (node.network != null) {
+            // The network might be null, for example if the node gets instantly removed.
+            node.network.cache.separate();
+            removeNetwork(node.network);
+        }
+
+        pendingUpdates.remove(node);
+
+        for (NetworkNode.Connection<H, C> connection : node.getConnections()) {
+            NetworkNode<H, C> target = connection.target();
+            target.removeConnection(connection.direction().getOpposite(), node);
+            target.updateHostConnections();
+            pendingUpdates.add(target);
+        }
+    }
+
+    private void removeDormantNode(NetworkNode<H, C> node) {
+        long chunkPos = ChunkPos.asLong(node.pos);
+        var chunkDormantNodes = dormantNodes.get(chunkPos);
+        if (chunkDormantNodes != null) {
+            chunkDormantNodes.remove(node);
+
+            if (chunkDormantNodes.isEmpty()) {
+                dormantNodes.remove(chunkPos);
+            }
+        }
+    }
+
+    void onChunkLoaded(ChunkPos chunkPos) {
+        if (dormantNodes.containsKey(chunkPos.toLong())) {
+            pendingChunkChecks.add(new ChunkCheck(chunkPos.toLong(), TickHelper.getTickCounter()));
+        }
+    }
+
+    /**
+     * Remove dormant nodes that were not reloaded with their chunk, for example because the chunk was modified externally.
+     */
+    private void checkDormantNodes() {
+        if (pendingChunkChecks.isEmpty()) {
+            return;
+        }
+
+        long currentTick = TickHelper.getTickCounter();
+
+        for (Iterator<ChunkCheck> it = pendingChunkChecks.iterator(); it.hasNext();) {
+            ChunkCheck check = it.next();
+
+            // Leave one full tick for the pipes of the chunk to register themselves.
+            if (check.tick() >= currentTick - 1) {
+                continue;
+            }
+
+            it.remove();
+
+            var chunkDormantNodes = dormantNodes.get(check.chunkPos());
+
+            if (chunkDormantNodes != null && level.hasChunk(ChunkPos.getX(check.chunkPos()), ChunkPos.getZ(check.chunkPos()))) {
+                for (NetworkNode<H, C> node : new ArrayList<>(chunkDormantNodes)) {
+                    detachNode(node);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tick the networks of this level.
+     *
+     * @param deadline {@link System#nanoTime()} after which the remaining networks are deferred to the next tick.
+     *                 At least one network is always ticked.
+     */
+    void tick(long deadline) {
+        checkDormantNodes();
+        updateNetworks();
+
+        if (tickOrderDirty) {
+            tickOrderDirty = false;
+            // Resume from the same network if it still exists, so that frequent rebuilds don't starve the networks at the end.
+            Network<H, C> cursorNetwork = tickCursor < tickOrder.size() ? tickOrder.get(tickCursor) : null;
+            tickOrder.clear();
+            tickOrder.addAll(networks);
+            int cursorIndex = cursorNetwork == null ? -1 : tickOrder.indexOf(cursorNetwork);
+            if (cursorIndex >= 0) {
+                tickCursor = cursorIndex;
+            } else {
+                tickCursor = tickOrder.isEmpty() ? 0 : tickCursor % tickOrder.size();
+            }
+        }
+
+        long startTime = System.nanoTime();
+        int networkCount = tickOrder.size();
+        int ticked = 0;
+
+        iteratingOverNetworks = true;
+
+        try {
+            for (; ticked < networkCount; ++ticked) {
+                if (ticked > 0 && deadline != Long.MAX_VALUE && System.nanoTime() > deadline) {
+                    break;
+                }
+
+                Network<H, C> network = tickOrder.get((tickCursor + ticked) % networkCount);
+                // Networks that are entirely unloaded are kept around, but they don't need to be ticked.
+                if (network.cache.hasLoadedNodes()) {
+                    network.cache.tick();
+                }
+            }
+        } finally {
+            iteratingOverNetworks = false;
+        }
+
+        tickCursor = networkCount == 0 ? 0 : (tickCursor + ticked) % networkCount;
+        lastDeferredNetworks = networkCount - ticked;
+        lastTickNanos = System.nanoTime() - startTime;
+    }
+
+    private void updateNetworks() {
+        if (pendingUpdates.size() == 0)
+            return;
+
+        List<NetworkNode<H, C>> pendingUpdatesCopy = new ArrayList<>(pendingUpdates);
+        pendingUpdates.clear();
+
+        // pendingUpdates is now used as a visited flag while we rebuild the networks
+        for (NetworkNode<H, C> node : pendingUpdatesCopy) {
+            if (!pendingUpdates.contains(node)) {
+                List<NetworkNode<H, C>> nodes = new ArrayList<>();
+                Network<H, C> network = new Network<>(nodes);
+                Reference2IntOpenHashMap<C> predecessors = new Reference2IntOpenHashMap<>();
+                assignNetworkDfs(node, network, predecessors);
+                network.cache = cacheFactory.build(level, network.nodes);
+                if (!predecessors.isEmpty()) {
+                    network.cache.inheritFrom(predecessors);
+                }
+                networks.add(network);
+                tickOrderDirty = true;
+            }
+        }
+
+        // clear the visited flag
+        pendingUpdates.clear();
+    }
+
+    private void assignNetworkDfs(NetworkNode<H, C> u, Network<H, C> network, Reference2IntOpenHashMap<C> predecessors) {
+        if (pendingUpdates.add(u)) {
+            // Remove previous network
+            if (u.network != null) {
+                removeNetwork(u.network);
+                predecessors.addTo(u.network.cache, 1);
+            }
+
+            // Link node to new network
+            u.network = network;
+            network.nodes.add(u);
+
+            // Visit neighbors
+            for (NetworkNode.Connection<H, C> connection : u.getConnections()) {
+                assignNetworkDfs(connection.target(), network, predecessors);
+            }
+        }
+    }
+
+    private void removeNetwork(Network<H, C> network) {
+        if (networks.remove(network)) {
+            tickOrderDirty = true;
+        }
+    }
+
+    void appendDebugInfo(StringBuilder out) {
+        int dormantCount = 0;
+        for (var chunkDormantNodes : dormantNodes.values()) {
+            dormantCount += chunkDormantNodes.size();
+        }
+
+        out.append("Networks = ").append(networks.size()).append(", nodes = ").append(nodes.size());
+        out.append(", dormant nodes = ").append(dormantCount).append('\n');
+        out.append("Last tick = ").append(lastTickNanos / 1000).append(" us");
+        out.append(", deferred networks = ").append(lastDeferredNetworks).append('\n');
+    }
+
+    private record ChunkCheck(long chunkPos, long tick) {
+    }
+}
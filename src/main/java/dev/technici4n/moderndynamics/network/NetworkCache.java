@@ -18,10 +18,12 @@
  */
 package dev.technici4n.moderndynamics.network;
 
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
 import java.util.*;
 import net.minecraft.CrashReport;
 import net.minecraft.ReportedException;
 import net.minecraft.server.level.ServerLevel;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Cache for a given network, storing the actual logic.
@@ -38,14 +40,22 @@ public abstract class NetworkCache<H extends NodeHost, C extends NetworkCache<H,
      */
     private boolean combined = false;
     private final Set<NodeHost> hostsToUpdate = Collections.newSetFromMap(new IdentityHashMap<>());
+    /**
+     * Number of nodes that are not {@link NetworkNode#isDormant() dormant}.
+     */
+    private int loadedNodes = 0;
 
     protected NetworkCache(ServerLevel level, List<NetworkNode<H, C>> nodes) {
         this.level = level;
         this.nodes = nodes;
 
         for (NetworkNode<H, C> node : nodes) {
-            if (node.getHost().needsUpdate()) {
-                hostsToUpdate.add(node.getHost());
+            if (!node.isDormant()) {
+                loadedNodes++;
+
+                if (node.getHost().needsUpdate()) {
+                    hostsToUpdate.add(node.getHost());
+                }
             }
         }
     }
@@ -77,9 +87,10 @@ public abstract class NetworkCache<H extends NodeHost, C extends NetworkCache<H,
                     .setDetail("Level", level.dimension().location())
                     .setDetail("Number of nodes", nodes.size());
 
-            if (nodes.size() > 0) {
+            var firstHost = getFirstLoadedHost();
+            if (firstHost != null) {
                 var nodeDetails = report.addCategory("Details of first node in the network");
-                nodes.get(0).getHost().pipe.fillCrashReportCategory(nodeDetails);
+                firstHost.pipe.fillCrashReportCategory(nodeDetails);
             }
 
             throw new ReportedException(report);
@@ -90,6 +101,66 @@ public abstract class NetworkCache<H extends NodeHost, C extends NetworkCache<H,
         hostsToUpdate.add(host);
     }
 
+    /**
+     * Called right after construction if this cache replaces older caches after a change in the topology,
+     * to carry over state that is still valid and avoid a cold start after every edit.
+     * The predecessors are always separated at that point.
+     *
+     * @param predecessors The previous caches, mapped to how many of their nodes are now part of this network.
+     */
+    protected void inheritFrom(Reference2IntMap<C> predecessors) {
+    }
+
+    /**
+     * Return true if at least one node of this network is loaded. Networks without loaded nodes don't need to be ticked.
+     */
+    public final boolean hasLoadedNodes() {
+        return loadedNodes > 0;
+    }
+
+    protected final int getLoadedNodeCount() {
+        return loadedNodes;
+    }
+
+    @Nullable
+    protected final H getFirstLoadedHost() {
+        for (NetworkNode<H, C> node : nodes) {
+            if (!node.isDormant()) {
+                return node.getHost();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Called right before the host of a node is unbound because its chunk is being unloaded.
+     * The cache is separated at that point.
+     */
+    final void onNodeUnloaded(NetworkNode<H, C> node, H host) {
+        hostsToUpdate.remove(host);
+        loadedNodes--;
+        onNodeLoadStateChanged(node, false);
+    }
+
+    /**
+     * Called right after a new host was bound to a dormant node. The cache is separated at that point.
+     */
+    final void onNodeReloaded(NetworkNode<H, C> node, H host) {
+        if (host.needsUpdate()) {
+            hostsToUpdate.add(host);
+        }
+        loadedNodes++;
+        onNodeLoadStateChanged(node, true);
+    }
+
+    /**
+     * Called when a node of this network becomes dormant, or when a dormant node is loaded again.
+     *
+     * @param loaded True if the node was loaded again, false if it is becoming dormant.
+     */
+    protected void onNodeLoadStateChanged(NetworkNode<H, C> node, boolean loaded) {
+    }
+
     protected void doCombine() {
     }
 
@@ -114,6 +185,7 @@ public abstract class NetworkCache<H extends NodeHost, C extends NetworkCache<H,
         out.append("==== Cache: ").append(getClass().getSimpleName()).append(" ====\n");
         out.append("Combined = ").append(combined).append('\n');
         out.append("Number of nodes = ").append(nodes.size()).append('\n');
+        out.append("Number of loaded nodes = ").append(loadedNodes).append('\n');
     }
 
     public interface Factory<H extends NodeHost, C extends NetworkCache<H, C>> {
@@ -18,18 +18,21 @@
  */
 package dev.technici4n.moderndynamics.network;
 
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import java.util.*;
 import net.minecraft.core.BlockPos;
-import net.minecraft.core.Direction;
+import net.minecraft.resources.ResourceKey;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
 import org.jetbrains.annotations.Nullable;
 
 /**
  * The manager of all networks for a given cache class.
+ * The nodes and networks are partitioned per level, and each level ticks its own networks.
  */
 public class NetworkManager<H extends NodeHost, C extends NetworkCache<H, C>> {
     private static final Map<Class<?>, NetworkManager<?, ?>> MANAGERS = new IdentityHashMap<>();
+    private static final Map<ResourceKey<Level>, LevelSettings> LEVEL_SETTINGS = new HashMap<>();
 
     @SuppressWarnings("unchecked")
     public static synchronized <H extends NodeHost, C extends NetworkCache<H, C>> NetworkManager<H, C> get(Class<C> cacheClass,
@@ -40,117 +43,114 @@ public class NetworkManager<H extends NodeHost, C extends NetworkCache<H, C>> {
         return (NetworkManager<H, C>) MANAGERS.computeIfAbsent(cacheClass, c -> new NetworkManager<>(cacheClass, factory));
     }
 
-    public static synchronized void onServerStopped() {
+    /**
+     * Enable or disable the ticking of all networks in a dimension. Nodes are still tracked while the dimension is disabled.
+     * The level settings are set with {@code /moderndynamics networks}, and are reset when the server stops.
+     */
+    public static void setLevelEnabled(ResourceKey<Level> dimension, boolean enabled) {
+        LEVEL_SETTINGS.computeIfAbsent(dimension, d -> new LevelSettings()).enabled = enabled;
+    }
+
+    /**
+     * Set how much time the networks of a dimension may spend ticking every tick, in nanoseconds, or 0 for no limit.
+     * Networks that don't fit in the budget are deferred to the next tick.
+     */
+    public static void setLevelTickBudget(ResourceKey<Level> dimension, long budgetNanos) {
+        LEVEL_SETTINGS.computeIfAbsent(dimension, d -> new LevelSettings()).tickBudgetNanos = Math.max(0, budgetNanos);
+    }
+
+    public static void onServerStopped() {
         for (NetworkManager<?, ?> manager : MANAGERS.values()) {
-            manager.nodes.clear();
-            manager.pendingUpdates.clear();
-            manager.networks.clear();
+            manager.levels.clear();
         }
+        LEVEL_SETTINGS.clear();
     }
 
-    public static synchronized void onEndTick() {
+    public static void onLevelUnloaded(ServerLevel level) {
         for (NetworkManager<?, ?> manager : MANAGERS.values()) {
-            manager.updateNetworks();
-
-            manager.iteratingOverNetworks = true;
-
-            try {
-                for (Network<?, ?> network : manager.networks) {
-                    network.cache.tick();
-                }
-            } finally {
-                manager.iteratingOverNetworks = false;
-            }
+            manager.levels.remove(level);
         }
     }
 
-    // TODO: remove this?
-    private final Class<C> cacheClass;
-    private final NetworkCache.Factory<H, C> cacheFactory;
-    private final IdentityHashMap<ServerLevel, Long2ObjectOpenHashMap<NetworkNode<H, C>>> nodes = new IdentityHashMap<>();
-    private final Set<NetworkNode<H, C>> pendingUpdates = Collections.newSetFromMap(new IdentityHashMap<>());
-    private final Set<Network<H, C>> networks = Collections.newSetFromMap(new IdentityHashMap<>());
-    private boolean iteratingOverNetworks = false;
+    /**
+     * Schedule a check of the dormant nodes in a freshly loaded chunk.
+     * Nodes that did not get a new host by the time of the check are removed for good.
+     */
+    public static void onChunkLoaded(ServerLevel level, ChunkPos chunkPos) {
+        for (NetworkManager<?, ?> manager : MANAGERS.values()) {
+            var levelNetworks = manager.levels.get(level);
 
-    NetworkManager(Class<C> cacheClass, NetworkCache.Factory<H, C> cacheFactory) {
-        this.cacheClass = cacheClass;
-        this.cacheFactory = cacheFactory;
+            if (levelNetworks != null) {
+                levelNetworks.onChunkLoaded(chunkPos);
+            }
+        }
     }
 
-    public void addNode(ServerLevel world, BlockPos pos, H host) {
-        if (iteratingOverNetworks) {
-            throw new ConcurrentModificationException(
-                    "Node at position " + pos + " in world " + world + " can't be added: networks are being iterated over.");
+    /**
+     * Called at the end of the tick of each level, to tick the networks of that level.
+     */
+    public static void onLevelTick(ServerLevel level) {
+        @Nullable
+        LevelSettings settings = LEVEL_SETTINGS.get(level.dimension());
+        if (settings != null && !settings.enabled) {
+            return;
         }
 
-        Long2ObjectOpenHashMap<NetworkNode<H, C>> worldNodes = nodes.computeIfAbsent(world, w -> new Long2ObjectOpenHashMap<>());
+        long deadline = settings == null || settings.tickBudgetNanos == 0 ? Long.MAX_VALUE : System.nanoTime() + settings.tickBudgetNanos;
 
-        NetworkNode<H, C> newNode = new NetworkNode<>(host);
+        for (NetworkManager<?, ?> manager : MANAGERS.values()) {
+            var levelNetworks = manager.levels.get(level);
 
-        if (worldNodes.put(pos.asLong(), newNode) != null) {
-            throw new IllegalArgumentException("Node at position " + pos + " in world " + world + " already exists.");
+            if (levelNetworks != null) {
+                levelNetworks.tick(deadline);
+            }
         }
+    }
 
-        pendingUpdates.add(newNode);
-
-        for (Direction direction : Direction.values()) {
-            BlockPos adjacentPos = pos.relative(direction);
-            @Nullable
-            NetworkNode<H, C> adjacentNode = worldNodes.get(adjacentPos.asLong());
-
-            if (adjacentNode != null) {
-                if (host.canConnectTo(direction, adjacentNode.getHost())
-                        && adjacentNode.getHost().canConnectTo(direction.getOpposite(), host)) {
-                    if (adjacentNode.network != null) {
-                        // The network of the adjacent node may be null during loading.
-                        adjacentNode.network.cache.separate();
-                    }
-
-                    newNode.addConnection(direction, adjacentNode);
-                    adjacentNode.addConnection(direction.getOpposite(), newNode);
-                    adjacentNode.updateHostConnections();
-                } else {
-                    newNode.getHost().onConnectionRejectedTo(direction, adjacentNode.getHost());
-                    adjacentNode.getHost().onConnectionRejectedTo(direction.getOpposite(), newNode.getHost());
-                }
+    public static void appendLevelDebugInfo(ServerLevel level, StringBuilder out) {
+        for (NetworkManager<?, ?> manager : MANAGERS.values()) {
+            var levelNetworks = manager.levels.get(level);
+
+            if (levelNetworks != null) {
+                out.append("==== Level: ").append(manager.cacheClass.getSimpleName()).append(" ====\n");
+                levelNetworks.appendDebugInfo(out);
             }
         }
-
-        newNode.updateHostConnections();
     }
 
-    public void removeNode(ServerLevel world, BlockPos pos, H host) {
-        if (iteratingOverNetworks) {
-            throw new ConcurrentModificationException(
-                    "Node at position " + pos + " in world " + world + " can't be removed: networks are being iterated over.");
-        }
+    private final Class<C> cacheClass;
+    private final NetworkCache.Factory<H, C> cacheFactory;
+    private final Map<ServerLevel, LevelNetworks<H, C>> levels = new IdentityHashMap<>();
 
-        Long2ObjectOpenHashMap<NetworkNode<H, C>> worldNodes = nodes.computeIfAbsent(world, w -> new Long2ObjectOpenHashMap<>());
+    NetworkManager(Class<C> cacheClass, NetworkCache.Factory<H, C> cacheFactory) {
+        this.cacheClass = cacheClass;
+        this.cacheFactory = cacheFactory;
+    }
 
-        NetworkNode<H, C> node = worldNodes.remove(pos.asLong());
+    private LevelNetworks<H, C> getOrCreateLevel(ServerLevel world) {
+        return levels.computeIfAbsent(world, w -> new LevelNetworks<>(w, cacheFactory));
+    }
 
-        if (node == null) {
-            throw new IllegalArgumentException("Node at position " + pos + " in world " + world + " can't be removed: it doesn't exist.");
-        }
+    public void addNode(ServerLevel world, BlockPos pos, H host) {
+        getOrCreateLevel(world).addNode(pos, host);
+    }
 
-        if (node.getHost() != host) {
-            throw new IllegalArgumentException("Node at position " + pos + " in world " + world + " can't be removed: the hosts don't match.");
-        }
+    public void removeNode(ServerLevel world, BlockPos pos, H host) {
+        var levelNetworks = getOrCreateLevel(world);
+        levelNetworks.removeNode(pos, host);
 
-        if (node.network != null) {
-            // The network might be null, for example if the node gets instantly removed.
-            node.network.cache.separate();
-            networks.remove(node.network);
+        // Forget about levels that don't have nodes anymore, so that they don't cost anything.
+        if (levelNetworks.isEmpty()) {
+            levels.remove(world);
         }
+    }
 
-        pendingUpdates.remove(node);
-
-        for (NetworkNode.Connection<H, C> connection : node.getConnections()) {
-            NetworkNode<H, C> target = connection.target();
-            target.removeConnection(connection.direction().getOpposite(), node);
-            target.updateHostConnections();
-            pendingUpdates.add(target);
-        }
+    /**
+     * Unbind the host of a node because its chunk is being unloaded.
+     * The node stays in its network as a dormant node, until the chunk is loaded again and a new host is bound to it.
+     */
+    public void unloadNode(ServerLevel world, BlockPos pos, H host) {
+        getOrCreateLevel(world).unloadNode(pos, host);
     }
 
     public void refreshNode(ServerLevel world, BlockPos pos, H host) {
@@ -160,47 +160,12 @@ public class NetworkManager<H extends NodeHost, C extends NetworkCache<H, C>> {
 
     @Nullable
     public NetworkNode<H, C> findNode(ServerLevel world, BlockPos pos) {
-        updateNetworks();
-
-        return nodes.computeIfAbsent(world, w -> new Long2ObjectOpenHashMap<>()).get(pos.asLong());
+        var levelNetworks = levels.get(world);
+        return levelNetworks == null ? null : levelNetworks.findNode(pos);
     }
 
-    private void updateNetworks() {
-        if (pendingUpdates.size() == 0)
-            return;
-
-        List<NetworkNode<H, C>> pendingUpdatesCopy = new ArrayList<>(pendingUpdates);
-        pendingUpdates.clear();
-
-        // pendingUpdates is now used as a visited flag while we rebuild the networks
-        for (NetworkNode<H, C> node : pendingUpdatesCopy) {
-            if (!pendingUpdates.contains(node)) {
-                List<NetworkNode<H, C>> nodes = new ArrayList<>();
-                Network<H, C> network = new Network<>(nodes);
-                assignNetworkDfs(node, network);
-                network.cache = cacheFactory.build((ServerLevel) node.getHost().pipe.getLevel(), network.nodes);
-                networks.add(network);
-            }
-        }
-
-        // clear the visited flag
-        pendingUpdates.clear();
-    }
-
-    private void assignNetworkDfs(NetworkNode<H, C> u, Network<H, C> network) {
-        if (pendingUpdates.add(u)) {
-            // Remove previous network
-            if (u.network != null)
-                networks.remove(u.network);
-
-            // Link node to new network
-            u.network = network;
-            network.nodes.add(u);
-
-            // Visit neighbors
-            for (NetworkNode.Connection<H, C> connection : u.getConnections()) {
-                assignNetworkDfs(connection.target(), network);
-            }
-        }
+    private static class LevelSettings {
+        boolean enabled = true;
+        long tickBudgetNanos = 0;
     }
 }
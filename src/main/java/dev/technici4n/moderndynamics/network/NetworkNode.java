@@ -22,14 +22,23 @@ import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
+import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
+import org.jetbrains.annotations.Nullable;
 
 public class NetworkNode<H extends NodeHost, C extends NetworkCache<H, C>> {
-    private final H host;
+    final BlockPos pos;
+    /**
+     * The host of this node, or {@code null} if the node is dormant, i.e. its chunk is unloaded.
+     * Dormant nodes keep their connections and their network, such that reloading the chunk only has to re-bind the host.
+     */
+    @Nullable
+    private H host;
     Network<H, C> network;
     private final List<Connection<H, C>> connections = new ArrayList<>();
 
-    public NetworkNode(H host) {
+    public NetworkNode(BlockPos pos, H host) {
+        this.pos = pos.immutable();
         this.host = host;
     }
 
@@ -37,10 +46,32 @@ public class NetworkNode<H extends NodeHost, C extends NetworkCache<H, C>> {
         return connections;
     }
 
+    /**
+     * Return the host of this node. Only {@code null} if the node {@link #isDormant() is dormant}.
+     */
     public H getHost() {
         return host;
     }
 
+    public BlockPos getPos() {
+        return pos;
+    }
+
+    public boolean isDormant() {
+        return host == null;
+    }
+
+    /**
+     * Return true if the node is loaded and its host {@link NodeHost#isTicking() is ticking}.
+     */
+    public boolean isTicking() {
+        return host != null && host.isTicking();
+    }
+
+    void bindHost(@Nullable H host) {
+        this.host = host;
+    }
+
     public C getNetworkCache() {
         return network.cache;
     }
@@ -53,7 +84,9 @@ public class NetworkNode<H extends NodeHost, C extends NetworkCache<H, C>> {
         }
 
         connections.add(new Connection<>(direction, target));
-        host.onConnectedTo(target.getHost());
+        if (host != null && target.host != null) {
+            host.onConnectedTo(target.host);
+        }
     }
 
     void removeConnection(Direction direction, NetworkNode<H, C> target) {
@@ -77,6 +110,10 @@ public class NetworkNode<H extends NodeHost, C extends NetworkCache<H, C>> {
      * Notify the host of changes to the connections.
      */
     void updateHostConnections() {
+        if (host == null) {
+            return;
+        }
+
         EnumSet<Direction> connections = EnumSet.noneOf(Direction.class);
 
         for (Connection<H, C> connection : this.connections) {
@@ -86,6 +123,15 @@ public class NetworkNode<H extends NodeHost, C extends NetworkCache<H, C>> {
         host.setConnections(connections);
     }
 
+    boolean hasConnection(Direction direction) {
+        for (Connection<H, C> connection : connections) {
+            if (connection.direction == direction) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public record Connection<H extends NodeHost, C extends NetworkCache<H, C>> (Direction direction, NetworkNode<H, C> target) {
     }
 }
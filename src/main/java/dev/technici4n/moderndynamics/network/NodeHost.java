@@ -22,6 +22,7 @@ import dev.technici4n.moderndynamics.attachment.AttachmentItem;
 import dev.technici4n.moderndynamics.attachment.attached.AttachedAttachment;
 import dev.technici4n.moderndynamics.pipe.PipeBlockEntity;
 import dev.technici4n.moderndynamics.util.SerializationHelper;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
 import net.minecraft.core.BlockPos;
@@ -35,6 +36,7 @@ import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.Level;
 import net.neoforged.neoforge.capabilities.BlockCapability;
+import net.neoforged.neoforge.capabilities.BlockCapabilityCache;
 import org.jetbrains.annotations.MustBeInvokedByOverriders;
 import org.jetbrains.annotations.Nullable;
 
@@ -54,6 +56,12 @@ public abstract class NodeHost {
      * The update is done by the network when the host is in a ticking chunk.
      */
     private boolean needsUpdate = true;
+    /**
+     * Lazily created caches for the capabilities of the adjacent blocks, one per side.
+     * Their invalidation schedules an update of this host, which recomputes the connections.
+     */
+    @SuppressWarnings("rawtypes")
+    private final BlockCapabilityCache[] adjacentCaches = new BlockCapabilityCache[6];
 
     protected NodeHost(PipeBlockEntity pipe) {
         this.pipe = pipe;
@@ -114,7 +122,13 @@ public abstract class NodeHost {
      * Set the list of current connections.
      */
     public final void setConnections(EnumSet<Direction> connections) {
-        pipeConnections = SerializationHelper.directionsToMask(connections);
+        byte newConnections = SerializationHelper.directionsToMask(connections);
+        if (newConnections != pipeConnections) {
+            pipeConnections = newConnections;
+            // Sides that were pipe connections are not covered by the capability caches.
+            // The network of this node is always rebuilt afterwards, which will pick up the update.
+            needsUpdate = true;
+        }
         pipe.sync();
     }
 
@@ -135,6 +149,23 @@ public abstract class NodeHost {
     @SuppressWarnings("unchecked")
     public void removeSelf() {
         getManager().removeNode((ServerLevel) pipe.getLevel(), pipe.getBlockPos(), this);
+        onLeftNetwork();
+    }
+
+    /**
+     * Called instead of {@link #removeSelf} when the pipe is removed because its chunk is being unloaded.
+     */
+    @SuppressWarnings("unchecked")
+    public void unloadSelf() {
+        getManager().unloadNode((ServerLevel) pipe.getLevel(), pipe.getBlockPos(), this);
+        onLeftNetwork();
+    }
+
+    /**
+     * Teardown shared by {@link #removeSelf} and {@link #unloadSelf}, once the node is no longer part of a network.
+     */
+    protected void onLeftNetwork() {
+        clearAdjacentCaches();
     }
 
     @SuppressWarnings("unchecked")
@@ -142,6 +173,27 @@ public abstract class NodeHost {
         getManager().refreshNode((ServerLevel) pipe.getLevel(), pipe.getBlockPos(), this);
     }
 
+    /**
+     * Return the capability of the block adjacent to the given side, or {@code null} if there is none.
+     * Each host must always query the same capability.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    protected final <T> T getAdjacentCapability(BlockCapability<T, Direction> capability, Direction side) {
+        var cache = (BlockCapabilityCache<T, Direction>) adjacentCaches[side.get3DDataValue()];
+        if (cache == null) {
+            cache = BlockCapabilityCache.create(capability, (ServerLevel) pipe.getLevel(), pipe.getBlockPos().relative(side), side.getOpposite(),
+                    () -> !pipe.isRemoved(), this::scheduleUpdate);
+            adjacentCaches[side.get3DDataValue()] = cache;
+        }
+        return cache.getCapability();
+    }
+
+    private void clearAdjacentCaches() {
+        // The listeners of the old caches stop being notified since the pipe is removed.
+        Arrays.fill(adjacentCaches, null);
+    }
+
     @Nullable
     public abstract Object getApiInstance(BlockCapability<?, Direction> lookup, @Nullable Direction side);
 
@@ -254,6 +306,23 @@ public abstract class NodeHost {
     public void onRemoved() {
     }
 
+    /**
+     * Called on the server when an adjacent block or its contents changed.
+     * Capability changes are already handled by {@link #getAdjacentCapability}.
+     */
+    public void onNeighborChanged() {
+    }
+
+    /**
+     * Called on the server when the block next to the given side changed.
+     * Blocks are supposed to invalidate their capabilities when they change, but not all of them do:
+     * the capability of that side is looked up again, and the connections are rescanned.
+     */
+    public final void onAdjacentBlockChanged(Direction side) {
+        adjacentCaches[side.get3DDataValue()] = null;
+        scheduleUpdate();
+    }
+
     public void addDrops(List<ItemStack> drops) {
         for (Direction side : Direction.values()) {
             var attachment = getAttachment(side);
@@ -34,12 +34,12 @@ public class EnergyCache extends NetworkCache<EnergyHost, EnergyCache> {
 
     public int getEnergyStored() {
         combine();
-        return energyStorage.getEnergyStored();
+        return Ints.saturatedCast(energyStorage.getEnergyStored());
     }
 
     public int getMaxEnergyStored() {
         combine();
-        return energyStorage.getMaxEnergyStored();
+        return Ints.saturatedCast(energyStorage.getMaxEnergyStored());
     }
 
     public int insert(int maxAmount, boolean simulate) {
@@ -55,17 +55,21 @@ public class EnergyCache extends NetworkCache<EnergyHost, EnergyCache> {
     @Override
     protected void doCombine() {
         // Gather energy from nodes
-        int energy = 0;
-        int maxEnergy = 0;
+        long energy = 0;
+        long maxEnergy = 0;
 
         for (NetworkNode<EnergyHost, EnergyCache> node : nodes) {
+            if (node.isDormant()) {
+                continue;
+            }
+
             EnergyHost host = node.getHost();
 
             energy += host.getEnergy();
             maxEnergy += host.getMaxEnergy();
         }
 
-        energyStorage = new SimpleEnergyStorage(maxEnergy, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        energyStorage = new SimpleEnergyStorage(maxEnergy);
         energyStorage.setEnergy(energy);
     }
 
@@ -73,13 +77,17 @@ public class EnergyCache extends NetworkCache<EnergyHost, EnergyCache> {
     protected void doSeparate() {
         // Distribute new energy among nodes
         // Start with nodes with the lowest capacity
-        nodes.sort(Comparator.comparingLong(node -> node.getHost().getMaxEnergy()));
-        int remainingNodes = nodes.size();
+        nodes.sort(Comparator.comparingLong(node -> node.isDormant() ? 0 : node.getHost().getMaxEnergy()));
+        int remainingNodes = getLoadedNodeCount();
 
         for (NetworkNode<EnergyHost, EnergyCache> node : nodes) {
+            if (node.isDormant()) {
+                continue;
+            }
+
             EnergyHost host = node.getHost();
 
-            int nodeEnergy = Math.min(host.getMaxEnergy(), energyStorage.getEnergyStored() / remainingNodes);
+            int nodeEnergy = (int) Math.min(host.getMaxEnergy(), energyStorage.getEnergyStored() / remainingNodes);
             host.setEnergy(nodeEnergy);
             energyStorage.reduceEnergyStored(nodeEnergy);
             remainingNodes--;
@@ -97,7 +105,7 @@ public class EnergyCache extends NetworkCache<EnergyHost, EnergyCache> {
         List<IEnergyStorage> storages = new ArrayList<>();
 
         for (var node : nodes) {
-            if (node.getHost().isTicking()) {
+            if (node.isTicking()) {
                 node.getHost().addEnergyStorages(storages);
             }
         }
@@ -112,7 +120,7 @@ public class EnergyCache extends NetworkCache<EnergyHost, EnergyCache> {
     /**
      * Dispatch a transfer operation among a list of targets. Will not modify the list.
      */
-    public static int transferForTargets(TransferOperation operation, List<IEnergyStorage> targets, int maxAmount) {
+    public static long transferForTargets(TransferOperation operation, List<IEnergyStorage> targets, long maxAmount) {
         int intMaxAmount = Ints.saturatedCast(maxAmount);
         // Build target list
         List<EnergyTarget> sortableTargets = new ArrayList<>(targets.size());
@@ -128,11 +136,11 @@ public class EnergyCache extends NetworkCache<EnergyHost, EnergyCache> {
         // Sort from low to high result
         sortableTargets.sort(Comparator.comparingLong(t -> t.simulationResult));
         // Actually perform the transfer
-        int transferredAmount = 0;
+        long transferredAmount = 0;
         for (int i = 0; i < sortableTargets.size(); ++i) {
             EnergyTarget target = sortableTargets.get(i);
             int remainingTargets = sortableTargets.size() - i;
-            int remainingAmount = maxAmount - transferredAmount;
+            long remainingAmount = maxAmount - transferredAmount;
             int targetMaxAmount = Ints.saturatedCast(remainingAmount / remainingTargets);
 
             transferredAmount += operation.transfer(target.target, targetMaxAmount, false);
@@ -18,22 +18,51 @@
  */
 package dev.technici4n.moderndynamics.network.energy;
 
-import net.neoforged.neoforge.energy.EnergyStorage;
+/**
+ * Energy storage of a whole network. Amounts are longs since large networks can exceed the range of an int,
+ * and are only converted to ints at the {@link net.neoforged.neoforge.energy.IEnergyStorage} boundary.
+ */
+class SimpleEnergyStorage {
+    private final long capacity;
+    private long energy;
+
+    public SimpleEnergyStorage(long capacity) {
+        this.capacity = capacity;
+    }
+
+    public long getEnergyStored() {
+        return energy;
+    }
+
+    public long getMaxEnergyStored() {
+        return capacity;
+    }
+
+    public int receiveEnergy(int maxReceive, boolean simulate) {
+        int received = (int) Math.max(0, Math.min(maxReceive, capacity - energy));
+        if (!simulate) {
+            energy += received;
+        }
+        return received;
+    }
 
-class SimpleEnergyStorage extends EnergyStorage {
-    public SimpleEnergyStorage(int capacity, int maxReceive, int maxExtract) {
-        super(capacity, maxReceive, maxExtract);
+    public int extractEnergy(int maxExtract, boolean simulate) {
+        int extracted = (int) Math.max(0, Math.min(maxExtract, energy));
+        if (!simulate) {
+            energy -= extracted;
+        }
+        return extracted;
     }
 
-    public void setEnergy(int energy) {
+    public void setEnergy(long energy) {
         this.energy = energy;
     }
 
-    public void addEnergyStored(int energy) {
+    public void addEnergyStored(long energy) {
         this.energy += energy;
     }
 
-    public void reduceEnergyStored(int energy) {
+    public void reduceEnergyStored(long energy) {
         this.energy -= energy;
     }
 }
@@ -25,6 +25,7 @@ import net.neoforged.neoforge.fluids.capability.IFluidHandler;
 import org.jetbrains.annotations.Nullable;
 
 public record ConnectedFluidStorage(
+        FluidHost host,
         IFluidHandler storage,
         @Nullable FluidAttachedIo attachment,
         /*
@@ -32,11 +33,18 @@ public record ConnectedFluidStorage(
          */
         @Nullable IFluidHandler extractorFilteredStorage) {
 
-    public static Function<ConnectedFluidStorage, IFluidHandler> filterAttractors(boolean allowAttractors) {
-        return cfs -> {
-            boolean hasAttractor = cfs.attachment() != null && cfs.attachment().getType() == IoAttachmentType.ATTRACTOR;
+    /**
+     * Return true if the storage should take part in the transfers of the current tick.
+     */
+    public boolean isActive() {
+        return host.isTicking() && (attachment == null || attachment.isEnabledViaRedstone(host.getPipe()));
+    }
 
-            return hasAttractor == allowAttractors ? cfs.storage() : null;
-        };
+    public boolean isAttractor() {
+        return attachment != null && attachment.getType() == IoAttachmentType.ATTRACTOR;
+    }
+
+    public static Function<ConnectedFluidStorage, IFluidHandler> filterAttractors(boolean allowAttractors) {
+        return cfs -> cfs.isAttractor() == allowAttractors ? cfs.storage() : null;
     }
 }
@@ -21,12 +21,13 @@ package dev.technici4n.moderndynamics.network.fluid;
 import com.google.common.primitives.Ints;
 import dev.technici4n.moderndynamics.Constants;
 import dev.technici4n.moderndynamics.attachment.IoAttachmentType;
-import dev.technici4n.moderndynamics.attachment.attached.FluidAttachedIo;
 import dev.technici4n.moderndynamics.network.NetworkCache;
 import dev.technici4n.moderndynamics.network.NetworkNode;
+import dev.technici4n.moderndynamics.network.TickHelper;
 import dev.technici4n.moderndynamics.util.FluidVariant;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
@@ -37,16 +38,57 @@ import net.neoforged.neoforge.fluids.FluidStack;
 import net.neoforged.neoforge.fluids.FluidType;
 import net.neoforged.neoforge.fluids.capability.IFluidHandler;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
     private FluidCacheStorage fluidStorage = null;
     private int attractorBuffer = 0;
     private boolean allowNetworkIo = true;
+    /**
+     * Connected storages of the loaded hosts, rebuilt lazily after {@link #invalidateTargets}.
+     */
+    @Nullable
+    private ConnectedFluidStorage[] targets = null;
+    /*
+     * Scratch buffers for the current tick: the targets that are ticking and enabled, and the transfer order.
+     */
+    private ConnectedFluidStorage[] activeTargets = new ConnectedFluidStorage[0];
+    private int activeTargetCount = 0;
+    private FluidTarget[] transferTargets = new FluidTarget[0];
+    /*
+     * Contents of the network when the pipes were last notified, see syncContents.
+     */
+    private long lastContentsSyncTick = Long.MIN_VALUE;
+    private FluidVariant lastSyncedVariant = FluidVariant.blank();
+    private long lastSyncedAmount = -1;
 
     protected FluidCache(ServerLevel level, List<NetworkNode<FluidHost, FluidCache>> networkNodes) {
         super(level, networkNodes);
     }
 
+    @Override
+    protected void inheritFrom(Reference2IntMap<FluidCache> predecessors) {
+        // Split the attractor buffers proportionally to the number of nodes that were carried over.
+        long inheritedBuffer = 0;
+        for (var entry : predecessors.reference2IntEntrySet()) {
+            var predecessor = entry.getKey();
+            inheritedBuffer += (long) predecessor.attractorBuffer * entry.getIntValue() / predecessor.nodes.size();
+        }
+        attractorBuffer = (int) Math.min(inheritedBuffer, FluidType.BUCKET_VOLUME);
+    }
+
+    /**
+     * Called when the connected storages of a host changed.
+     */
+    void invalidateTargets() {
+        targets = null;
+    }
+
+    @Override
+    protected void onNodeLoadStateChanged(NetworkNode<FluidHost, FluidCache> node, boolean loaded) {
+        invalidateTargets();
+    }
+
     public FluidCacheStorage getOrCreateStorage() {
         combine();
         return fluidStorage;
@@ -55,9 +97,13 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
     @Override
     protected void doCombine() {
         FluidVariant fv = FluidVariant.blank();
-        int amount = 0;
+        long amount = 0;
 
         for (var node : nodes) {
+            if (node.isDormant()) {
+                continue;
+            }
+
             var host = node.getHost();
 
             if (!host.getVariant().isBlank()) {
@@ -79,12 +125,16 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
         // Distribute new energy among nodes
         // Start with nodes with the lowest capacity
         nodes.sort(Comparator.comparingLong(node -> Constants.Fluids.CAPACITY));
-        int remainingNodes = nodes.size();
+        int remainingNodes = getLoadedNodeCount();
 
         for (NetworkNode<FluidHost, FluidCache> node : nodes) {
+            if (node.isDormant()) {
+                continue;
+            }
+
             FluidHost host = node.getHost();
 
-            var nodeAmount = Math.min(Constants.Fluids.CAPACITY, fluidStorage.amount / remainingNodes);
+            var nodeAmount = (int) Math.min(Constants.Fluids.CAPACITY, fluidStorage.amount / remainingNodes);
             host.setContents(fluidStorage.variant, nodeAmount);
             fluidStorage.amount -= nodeAmount;
             remainingNodes--;
@@ -99,19 +149,7 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
         combine();
 
         // Gather inventory connections
-        List<ConnectedFluidStorage> targets = new ArrayList<>();
-        for (var node : nodes) {
-            if (node.getHost().isTicking()) {
-                node.getHost().gatherCapabilities(targets);
-            }
-        }
-
-        List<FluidAttachedIo> attractors = new ArrayList<>();
-        for (var conn : targets) {
-            if (conn.attachment() != null && conn.attachment().getType() == IoAttachmentType.ATTRACTOR) {
-                attractors.add(conn.attachment());
-            }
-        }
+        gatherActiveTargets();
 
         boolean changedVariant = false;
         allowNetworkIo = false;
@@ -119,7 +157,7 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
         try {
             // Find item to extract
             if (fluidStorage.isResourceBlank()) {
-                var newVariant = findVariantForNetwork(targets, attractors);
+                var newVariant = findVariantForNetwork();
                 if (!newVariant.isBlank() && canChangeVariant()) {
                     fluidStorage.variant = newVariant;
                     changedVariant = true;
@@ -128,10 +166,10 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
 
             if (!fluidStorage.isResourceBlank()) {
                 // Take from connected storages
-                extractFluid(targets);
-                attractFluid(targets, attractors);
+                extractFluid();
+                attractFluid();
                 // Push to connected storages
-                distributeFluid(targets);
+                distributeFluid();
 
                 if (fluidStorage.amount == 0 && canChangeVariant()) {
                     fluidStorage.variant = FluidVariant.blank();
@@ -145,30 +183,95 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
         // Always separate after a change of variant to ensure that the nodes properly update their stored item.
         if (changedVariant) {
             separate();
+        } else {
+            // Otherwise the network stays combined, it is separated when saving or when the topology changes.
+            syncContents();
+        }
+    }
+
+    /**
+     * Periodically notify the loaded pipes of their share of the network contents,
+     * so that they get saved and the clients see roughly how full they are.
+     */
+    private void syncContents() {
+        long tick = TickHelper.getTickCounter();
+        if (tick - lastContentsSyncTick < Constants.Fluids.CLIENT_SYNC_INTERVAL) {
+            return;
+        }
+        lastContentsSyncTick = tick;
+
+        if (fluidStorage.amount == lastSyncedAmount && fluidStorage.variant.equals(lastSyncedVariant)) {
+            return;
+        }
+        lastSyncedAmount = fluidStorage.amount;
+        lastSyncedVariant = fluidStorage.variant;
+
+        // Same distribution as doSeparate
+        long remainingAmount = fluidStorage.amount;
+        int remainingNodes = getLoadedNodeCount();
+
+        for (var node : nodes) {
+            if (node.isDormant()) {
+                continue;
+            }
+
+            var nodeAmount = (int) Math.min(Constants.Fluids.CAPACITY, remainingAmount / remainingNodes);
+            node.getHost().onNetworkContentsChanged(fluidStorage.variant, nodeAmount);
+            remainingAmount -= nodeAmount;
+            remainingNodes--;
+        }
+    }
+
+    private void gatherActiveTargets() {
+        if (targets == null) {
+            List<ConnectedFluidStorage> allTargets = new ArrayList<>();
+            for (var node : nodes) {
+                if (!node.isDormant()) {
+                    node.getHost().addConnectedStorages(allTargets);
+                }
+            }
+            targets = allTargets.toArray(ConnectedFluidStorage[]::new);
+
+            if (activeTargets.length < targets.length) {
+                activeTargets = new ConnectedFluidStorage[targets.length];
+                transferTargets = new FluidTarget[targets.length];
+                for (int i = 0; i < transferTargets.length; ++i) {
+                    transferTargets[i] = new FluidTarget();
+                }
+            }
         }
 
-        // For the MVP, we separate again and then sync each item value.
-        // TODO: smarter item syncing logic
-        separate();
+        int previousCount = activeTargetCount;
+        activeTargetCount = 0;
+        for (var target : targets) {
+            if (target.isActive()) {
+                activeTargets[activeTargetCount++] = target;
+            }
+        }
+        // Don't keep storages that are no longer used alive.
+        if (activeTargetCount < previousCount) {
+            Arrays.fill(activeTargets, activeTargetCount, Math.min(previousCount, activeTargets.length), null);
+        }
     }
 
     /**
-     * We only allow changing the item in the network if all hosts are ticking.
+     * We only allow changing the item in the network if all hosts are ticking, and in particular if no node is dormant.
      * This guarantees that we have made all the connections that we wanted to before,
      * since changing the item of the network will change how pipes can connect to each other.
      */
     private boolean canChangeVariant() {
         for (var node : nodes) {
-            if (!node.getHost().isTicking()) {
+            if (!node.isTicking()) {
                 return false;
             }
         }
         return true;
     }
 
-    private FluidVariant findVariantForNetwork(List<ConnectedFluidStorage> targets, List<FluidAttachedIo> attractors) {
+    private FluidVariant findVariantForNetwork() {
         // Look for item matching an extractor
-        for (var t : targets) {
+        for (int i = 0; i < activeTargetCount; ++i) {
+            var t = activeTargets[i];
             if (t.attachment() != null && t.attachment().getType() == IoAttachmentType.EXTRACTOR) {
                 var toExtract = findExtractableResource(t.storage(), fv -> t.attachment().matchesFilter(fv));
                 if (toExtract != null) {
@@ -178,18 +281,24 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
         }
 
         // Look for item matching an attractor
-        if (!attractors.isEmpty()) {
+        boolean hasAttractors = false;
+        for (int i = 0; i < activeTargetCount; ++i) {
+            hasAttractors |= activeTargets[i].isAttractor();
+        }
+
+        if (hasAttractors) {
             Predicate<FluidVariant> attractorFilter = fv -> {
-                for (var a : attractors) {
-                    if (a.matchesFilter(fv)) {
+                for (int i = 0; i < activeTargetCount; ++i) {
+                    var t = activeTargets[i];
+                    if (t.isAttractor() && t.attachment().matchesFilter(fv)) {
                         return true;
                     }
                 }
                 return false;
             };
 
-            for (var t : targets) {
-                var toExtract = findExtractableResource(t.storage(), attractorFilter);
+            for (int i = 0; i < activeTargetCount; ++i) {
+                var toExtract = findExtractableResource(activeTargets[i].storage(), attractorFilter);
                 if (!toExtract.isBlank()) {
                     return toExtract;
                 }
@@ -202,45 +311,48 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
     /**
      * Extract from connected storages that have an extractor.
      */
-    private void extractFluid(List<ConnectedFluidStorage> targets) {
-        fluidStorage.amount += transferForTargets(FluidCache::drain, targets, fluidStorage.variant,
+    private void extractFluid() {
+        fluidStorage.amount += transferForTargets(FluidCache::drain, fluidStorage.variant,
                 fluidStorage.getCapacity() - fluidStorage.amount, ConnectedFluidStorage::extractorFilteredStorage);
     }
 
     /**
      * Attract, i.e. extract from connected storages if there's attractors on the network.
      */
-    private void attractFluid(List<ConnectedFluidStorage> targets, List<FluidAttachedIo> attractors) {
-        int attractorPower = 0;
-        for (var attractor : attractors) {
-            attractorPower += attractor.matchesFilter(fluidStorage.variant) ? attractor.getFluidMaxIo() : 0;
+    private void attractFluid() {
+        long attractorPower = 0;
+        for (int i = 0; i < activeTargetCount; ++i) {
+            var t = activeTargets[i];
+            if (t.isAttractor() && t.attachment().matchesFilter(fluidStorage.variant)) {
+                attractorPower += t.attachment().getFluidMaxIo();
+            }
         }
-        int maxAttract = attractorBuffer + attractorPower;
-        int attracted = transferForTargets(FluidCache::drain, targets, fluidStorage.variant,
+        long maxAttract = attractorBuffer + attractorPower;
+        long attracted = transferForTargets(FluidCache::drain, fluidStorage.variant,
                 Math.min(fluidStorage.getCapacity() - fluidStorage.amount, maxAttract),
                 ConnectedFluidStorage::storage);
-        attractorBuffer = Math.min(maxAttract - attracted, FluidType.BUCKET_VOLUME);
+        attractorBuffer = (int) Math.min(maxAttract - attracted, FluidType.BUCKET_VOLUME);
         fluidStorage.amount += attracted;
     }
 
     /**
      * Distribute stored item among connected storages.
      */
-    private void distributeFluid(List<ConnectedFluidStorage> targets) {
+    private void distributeFluid() {
         // Insert into storages with attractors first
-        fluidStorage.amount -= transferForTargets(FluidCache::fill, targets, fluidStorage.variant,
+        fluidStorage.amount -= transferForTargets(FluidCache::fill, fluidStorage.variant,
                 fluidStorage.amount, ConnectedFluidStorage.filterAttractors(true));
         // Insert into others
-        fluidStorage.amount -= transferForTargets(FluidCache::fill, targets, fluidStorage.variant,
+        fluidStorage.amount -= transferForTargets(FluidCache::fill, fluidStorage.variant,
                 fluidStorage.amount, ConnectedFluidStorage.filterAttractors(false));
     }
 
     /**
-     * Dispatch a transfer operation among a list of targets. Will not modify the list.
+     * Dispatch a transfer operation among the active targets.
      *
      * @param storageGetter Can return null to skip the target
      */
-    private static int transferForTargets(TransferOperation operation, List<ConnectedFluidStorage> targets, FluidVariant variant, int maxAmount,
+    private long transferForTargets(TransferOperation operation, FluidVariant variant, long maxAmount,
             Function<ConnectedFluidStorage, IFluidHandler> storageGetter) {
         if (maxAmount == 0) {
             return 0;
@@ -248,31 +360,38 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
 
         int intMaxAmount = Ints.saturatedCast(maxAmount);
         // Build target list
-        List<FluidTarget> sortableTargets = new ArrayList<>(targets.size());
-        for (var target : targets) {
-            var storage = storageGetter.apply(target);
+        int targetCount = 0;
+        for (int i = 0; i < activeTargetCount; ++i) {
+            var storage = storageGetter.apply(activeTargets[i]);
 
             if (storage != null) {
-                sortableTargets.add(new FluidTarget(storage));
+                transferTargets[targetCount++].target = storage;
             }
         }
         // Shuffle for better transfer on average
-        Collections.shuffle(sortableTargets);
+        for (int i = targetCount - 1; i > 0; --i) {
+            int j = level.random.nextInt(i + 1);
+            var swapped = transferTargets[i];
+            transferTargets[i] = transferTargets[j];
+            transferTargets[j] = swapped;
+        }
         // Simulate the transfer for every target
-        for (FluidTarget target : sortableTargets) {
+        for (int i = 0; i < targetCount; ++i) {
+            FluidTarget target = transferTargets[i];
             target.simulationResult = operation.transfer(target.target, variant, intMaxAmount, IFluidHandler.FluidAction.SIMULATE);
         }
         // Sort from low to high result
-        sortableTargets.sort(Comparator.comparingLong(t -> t.simulationResult));
+        Arrays.sort(transferTargets, 0, targetCount, FluidTarget.BY_SIMULATION_RESULT);
         // Actually perform the transfer
-        int transferredAmount = 0;
-        for (int i = 0; i < sortableTargets.size(); ++i) {
-            FluidTarget target = sortableTargets.get(i);
-            int remainingTargets = sortableTargets.size() - i;
+        long transferredAmount = 0;
+        for (int i = 0; i < targetCount; ++i) {
+            FluidTarget target = transferTargets[i];
+            int remainingTargets = targetCount - i;
             long remainingAmount = maxAmount - transferredAmount;
             int targetMaxAmount = Ints.saturatedCast(remainingAmount / remainingTargets);
 
             transferredAmount += operation.transfer(target.target, variant, targetMaxAmount, IFluidHandler.FluidAction.EXECUTE);
+            target.target = null;
         }
         return transferredAmount;
     }
@@ -282,12 +401,11 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
     }
 
     private static class FluidTarget {
-        final IFluidHandler target;
-        long simulationResult;
+        static final Comparator<FluidTarget> BY_SIMULATION_RESULT = Comparator.comparingLong(t -> t.simulationResult);
 
-        FluidTarget(IFluidHandler target) {
-            this.target = target;
-        }
+        @Nullable
+        IFluidHandler target;
+        long simulationResult;
     }
 
     @Override
@@ -308,7 +426,7 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
 
     public class FluidCacheStorage implements IFluidHandler {
         private FluidVariant variant = FluidVariant.blank();
-        private int amount;
+        private long amount;
 
         @Override
         public int getTanks() {
@@ -317,7 +435,7 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
 
         @Override
         public @NotNull FluidStack getFluidInTank(int tank) {
-            return tank == 0 ? variant.toStack(amount) : FluidStack.EMPTY;
+            return tank == 0 ? variant.toStack(Ints.saturatedCast(amount)) : FluidStack.EMPTY;
         }
 
         @Override
@@ -340,7 +458,7 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
             }
 
             if (isFluidValid(0, resource)) {
-                var insertedAmount = Math.min(resource.getAmount(), getCapacity() - amount);
+                var insertedAmount = (int) Math.min(resource.getAmount(), getCapacity() - amount);
                 if (insertedAmount > 0) {
                     if (action.execute()) {
                         if (variant.isBlank()) {
@@ -364,7 +482,7 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
                 return FluidStack.EMPTY;
             }
 
-            var extractedAmount = Math.min(maxDrain, amount);
+            var extractedAmount = (int) Math.min(maxDrain, amount);
             if (extractedAmount > 0) {
                 var result = variant.toStack(extractedAmount);
 
@@ -383,9 +501,9 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
         }
 
         private void update() {
-            var oldVariant = nodes.get(0).getHost().getVariant();
+            var firstHost = getFirstLoadedHost();
 
-            if (!Objects.equals(oldVariant, variant)) {
+            if (firstHost != null && !Objects.equals(firstHost.getVariant(), variant)) {
                 // Make sure we updated the variant stored in each node!
                 separate();
             }
@@ -412,17 +530,17 @@ public class FluidCache extends NetworkCache<FluidHost, FluidCache> {
             return variant;
         }
 
-        public int getAmount() {
+        public long getAmount() {
             return amount;
         }
 
         @Override
         public int getTankCapacity(int tank) {
-            return tank == 0 ? getCapacity() : 0;
+            return tank == 0 ? Ints.saturatedCast(getCapacity()) : 0;
         }
 
-        public int getCapacity() {
-            return nodes.size() * Constants.Fluids.CAPACITY;
+        public long getCapacity() {
+            return (long) getLoadedNodeCount() * Constants.Fluids.CAPACITY;
         }
     }
 
@@ -49,6 +49,11 @@ public class FluidHost extends NodeHost {
 
     private FluidVariant variant = FluidVariant.blank();
     private int amount = 0;
+    /**
+     * Contents last sent to the client, with the amount quantized to one of {@link Constants.Fluids#CLIENT_LEVELS} levels.
+     */
+    private FluidVariant clientVariant = FluidVariant.blank();
+    private int clientLevel = 0;
     private final TransferLimits extractorLimit = new TransferLimits(side -> {
         if (!(getAttachment(side) instanceof FluidAttachedIo io) || io.getType() != IoAttachmentType.EXTRACTOR) {
             return 0;
@@ -59,6 +64,10 @@ public class FluidHost extends NodeHost {
     // Caps
     private final IFluidHandler[] caps = new IFluidHandler[6];
     private final IFluidHandler unsidedCap;
+    /**
+     * Adjacent storages, wrapped according to the attachments. Rebuilt when the connections are updated.
+     */
+    private final ConnectedFluidStorage[] connectedStorages = new ConnectedFluidStorage[6];
 
     public FluidHost(PipeBlockEntity pipe) {
         super(pipe);
@@ -122,10 +131,40 @@ public class FluidHost extends NodeHost {
             this.amount = nodeFluid;
 
             pipe.setChanged();
+        }
+        updateClientContents(variant, nodeFluid);
+    }
+
+    /**
+     * Called periodically while the network is combined, with the share of the network contents that this pipe would get.
+     * The stored contents are only written when the network is separated, so this only marks the chunk for saving.
+     */
+    void onNetworkContentsChanged(FluidVariant variant, int nodeFluid) {
+        pipe.getLevel().blockEntityChanged(pipe.getBlockPos());
+        updateClientContents(variant, nodeFluid);
+    }
+
+    /**
+     * Sync the contents to the client, but only if the visible fill level changed.
+     */
+    private void updateClientContents(FluidVariant variant, int nodeFluid) {
+        int level = getClientLevel(nodeFluid);
+        if (!variant.equals(clientVariant) || level != clientLevel) {
+            clientVariant = variant;
+            clientLevel = level;
             pipe.sync(false);
         }
     }
 
+    private static int getClientLevel(int nodeFluid) {
+        if (nodeFluid <= 0) {
+            return 0;
+        }
+        // Don't let a pipe with a bit of fluid appear empty.
+        long level = Math.round((double) nodeFluid * Constants.Fluids.CLIENT_LEVELS / Constants.Fluids.CAPACITY);
+        return (int) Math.max(1, Math.min(level, Constants.Fluids.CLIENT_LEVELS));
+    }
+
     @Override
     protected void doUpdate() {
         updateConnections();
@@ -171,36 +210,34 @@ public class FluidHost extends NodeHost {
         }
     }
 
-    public void gatherCapabilities(@Nullable List<ConnectedFluidStorage> out) {
-        int oldConnections = inventoryConnections;
-
+    private void gatherCapabilities() {
         for (int i = 0; i < 6; ++i) {
+            connectedStorages[i] = null;
+
             if ((inventoryConnections & (1 << i)) > 0 && (pipeConnections & (1 << i)) == 0) {
                 Direction dir = Direction.from3DDataValue(i);
-                IFluidHandler adjacentCap = pipe.getLevel().getCapability(Capabilities.FluidHandler.BLOCK, pipe.getBlockPos().relative(dir),
-                        dir.getOpposite());
+                IFluidHandler adjacentCap = getAdjacentCapability(Capabilities.FluidHandler.BLOCK, dir);
 
                 if (adjacentCap != null) {
-                    if (out != null) {
-                        var attachment = getAttachment(dir) instanceof FluidAttachedIo io ? io : null;
-                        if (attachment == null) {
-                            out.add(new ConnectedFluidStorage(adjacentCap, null, null));
-                        } else if (attachment.isEnabledViaRedstone(pipe)) {
-                            var filteredStorage = new FilteringFluidHandler(adjacentCap) {
-                                @Override
-                                protected boolean canExtract(FluidVariant resource) {
-                                    return canMoveOutsideToNetwork(dir, resource);
-                                }
-
-                                @Override
-                                protected boolean canInsert(FluidVariant resource) {
-                                    return canMoveNetworkToOutside(dir, resource);
-                                }
-                            };
-                            var extractorRateLimit = attachment.getType() == IoAttachmentType.EXTRACTOR ? new ExtractorStorage(filteredStorage, i)
-                                    : null;
-                            out.add(new ConnectedFluidStorage(filteredStorage, attachment, extractorRateLimit));
-                        }
+                    var attachment = getAttachment(dir) instanceof FluidAttachedIo io ? io : null;
+                    if (attachment == null) {
+                        connectedStorages[i] = new ConnectedFluidStorage(this, adjacentCap, null, null);
+                    } else {
+                        // The redstone state of the attachment is checked by the network every tick.
+                        var filteredStorage = new FilteringFluidHandler(adjacentCap) {
+                            @Override
+                            protected boolean canExtract(FluidVariant resource) {
+                                return canMoveOutsideToNetwork(dir, resource);
+                            }
+
+                            @Override
+                            protected boolean canInsert(FluidVariant resource) {
+                                return canMoveNetworkToOutside(dir, resource);
+                            }
+                        };
+                        var extractorRateLimit = attachment.getType() == IoAttachmentType.EXTRACTOR ? new ExtractorStorage(filteredStorage, i)
+                                : null;
+                        connectedStorages[i] = new ConnectedFluidStorage(this, filteredStorage, attachment, extractorRateLimit);
                     }
                 } else {
                     // Remove the direction from the bitmask
@@ -209,8 +246,20 @@ public class FluidHost extends NodeHost {
             }
         }
 
-        if (oldConnections != inventoryConnections) {
-            pipe.sync();
+        NetworkNode<FluidHost, FluidCache> node = findNode();
+        if (node != null && node.getHost() == this) {
+            node.getNetworkCache().invalidateTargets();
+        }
+    }
+
+    /**
+     * Add the adjacent storages of this host to the target list of the network.
+     */
+    void addConnectedStorages(List<ConnectedFluidStorage> out) {
+        for (var storage : connectedStorages) {
+            if (storage != null) {
+                out.add(storage);
+            }
         }
     }
 
@@ -220,7 +269,7 @@ public class FluidHost extends NodeHost {
 
         // Compute new connections (excluding existing adjacent pipe connections, and the blacklist)
         inventoryConnections = (1 << 6) - 1 - (pipeConnections | pipe.connectionBlacklist);
-        gatherCapabilities(null);
+        gatherCapabilities();
 
         // Update render
         if (oldConnections != inventoryConnections) {
@@ -245,13 +294,15 @@ public class FluidHost extends NodeHost {
         if (variant.isBlank()) {
             amount = 0;
         }
+        clientVariant = variant;
+        clientLevel = getClientLevel(amount);
     }
 
     @Override
     public void writeClientNbt(CompoundTag tag) {
         super.writeClientNbt(tag);
-        tag.putInt("amount", amount);
-        tag.put("variant", variant.toNbt());
+        tag.putInt("amount", clientLevel * Constants.Fluids.CAPACITY / Constants.Fluids.CLIENT_LEVELS);
+        tag.put("variant", clientVariant.toNbt());
     }
 
     @Override
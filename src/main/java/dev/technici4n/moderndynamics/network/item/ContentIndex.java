@@ -0,0 +1,116 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.network.item;
+
+import dev.technici4n.moderndynamics.attachment.attached.ItemAttachedIo;
+import dev.technici4n.moderndynamics.util.ItemVariant;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import java.util.Set;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Approximate index of the contents of the inventories connected to a network, so that attractors can skip inventories
+ * that recently held nothing they could pull. It is fed by extractor and attractor scans, and by deliveries.
+ * Seen variants are kept until the next complete scan, but the absence of a variant is only trusted for
+ * {@link #ABSENCE_TRUST_TICKS} ticks, since inventories can also be filled from outside the network.
+ */
+final class ContentIndex {
+    private static final int ABSENCE_TRUST_TICKS = 100;
+    /**
+     * Beyond this many variants, an inventory is assumed to possibly contain anything.
+     */
+    private static final int MAX_VARIANTS = 32;
+
+    @SuppressWarnings("unchecked")
+    private final Long2ObjectOpenHashMap<Entry>[] entries = new Long2ObjectOpenHashMap[6];
+
+    ContentIndex() {
+        for (int i = 0; i < 6; ++i) {
+            entries[i] = new Long2ObjectOpenHashMap<>();
+        }
+    }
+
+    Entry getEntry(BlockPos pos, Direction side) {
+        return entries[side.get3DDataValue()].computeIfAbsent(pos.asLong(), p -> new Entry());
+    }
+
+    /**
+     * Return true if an attractor with the given filter might find items to pull from the given inventory.
+     */
+    boolean mayContain(BlockPos pos, Direction side, ItemAttachedIo attractor, long tick) {
+        @Nullable
+        var entry = entries[side.get3DDataValue()].get(pos.asLong());
+        return entry == null || entry.mayContain(attractor, tick);
+    }
+
+    void inheritFrom(ContentIndex predecessor) {
+        for (int i = 0; i < 6; ++i) {
+            for (var entry : predecessor.entries[i].long2ObjectEntrySet()) {
+                entries[i].putIfAbsent(entry.getLongKey(), entry.getValue());
+            }
+        }
+    }
+
+    static final class Entry {
+        private final Set<ItemVariant> variants = new ObjectOpenHashSet<>();
+        private boolean overflowed = false;
+        /**
+         * Tick of the last complete scan, or {@link Long#MIN_VALUE} if the variants might be incomplete.
+         */
+        private long scanTick = Long.MIN_VALUE;
+
+        void record(ItemVariant variant) {
+            if (!overflowed && variants.add(variant) && variants.size() > MAX_VARIANTS) {
+                overflowed = true;
+                variants.clear();
+            }
+        }
+
+        /**
+         * Start a scan that will record every variant in the inventory.
+         */
+        void startScan() {
+            variants.clear();
+            overflowed = false;
+            scanTick = Long.MIN_VALUE;
+        }
+
+        /**
+         * Mark the current scan as complete, if it was not interrupted.
+         */
+        void finishScan(long tick) {
+            scanTick = tick;
+        }
+
+        private boolean mayContain(ItemAttachedIo attractor, long tick) {
+            if (overflowed || scanTick == Long.MIN_VALUE || tick - scanTick > ABSENCE_TRUST_TICKS) {
+                return true;
+            }
+            for (var variant : variants) {
+                if (attractor.matchesItemFilter(variant)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.network.item;
+
+import dev.technici4n.moderndynamics.attachment.attached.ItemAttachedIo;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.item.Item;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Index of the destinations of a path list that may accept each item, based on the filters at the end of the paths.
+ * Paths that end in a whitelist can only receive the listed items; all other paths might receive any item.
+ * The index only narrows down the candidates: each candidate must still be checked against its endpoint.
+ */
+final class DestinationIndex {
+    private static final IntArrayList EMPTY = new IntArrayList();
+
+    private final int filterVersion;
+    /**
+     * Indices of the paths that might accept any item, sorted.
+     */
+    private final IntArrayList openPaths = new IntArrayList();
+    /**
+     * Indices of the paths that only accept some items, sorted, for each item.
+     */
+    private final Map<Item, IntArrayList> pathsByItem = new IdentityHashMap<>();
+
+    /**
+     * @param filterVersion The {@link ItemCache#getFilterVersion() filter version} of the network.
+     */
+    DestinationIndex(List<ItemPath> paths, ServerLevel level, int filterVersion) {
+        this.filterVersion = filterVersion;
+
+        for (int i = 0; i < paths.size(); ++i) {
+            var matchableItems = paths.get(i).getEndAttachment(level) instanceof ItemAttachedIo io ? io.getMatchableItems() : null;
+
+            if (matchableItems == null) {
+                openPaths.add(i);
+            } else {
+                for (var item : matchableItems) {
+                    pathsByItem.computeIfAbsent(item, it -> new IntArrayList()).add(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return true if no filter of the network changed since this index was built.
+     */
+    boolean isValid(int filterVersion) {
+        return this.filterVersion == filterVersion;
+    }
+
+    IntArrayList getOpenPaths() {
+        return openPaths;
+    }
+
+    IntArrayList getPaths(Item item) {
+        @Nullable
+        var paths = pathsByItem.get(item);
+        return paths == null ? EMPTY : paths;
+    }
+}
@@ -19,10 +19,14 @@
 package dev.technici4n.moderndynamics.network.item;
 
 import com.google.common.base.Preconditions;
+import dev.technici4n.moderndynamics.attachment.IoAttachmentType;
 import dev.technici4n.moderndynamics.attachment.attached.ItemAttachedIo;
+import dev.technici4n.moderndynamics.attachment.settings.OversendingMode;
 import dev.technici4n.moderndynamics.network.NetworkCache;
 import dev.technici4n.moderndynamics.network.NetworkNode;
+import dev.technici4n.moderndynamics.network.TickHelper;
 import dev.technici4n.moderndynamics.util.ItemVariant;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
 import java.util.List;
 import net.minecraft.server.level.ServerLevel;
 import org.jetbrains.annotations.Nullable;
@@ -30,6 +34,15 @@ import org.jetbrains.annotations.Nullable;
 public class ItemCache extends NetworkCache<ItemHost, ItemCache> {
     private boolean inserting = false;
     protected final ItemPathCache pathCache = new ItemPathCache();
+    protected final ContentIndex contentIndex = new ContentIndex();
+    /**
+     * Order used by {@link #insertList(NetworkNode, List, ItemVariant, int, boolean, double)}, reused since insertions don't nest.
+     */
+    private final RoutingOrder closestOrder = new RoutingOrder();
+    /**
+     * Incremented every time the filter configuration of an item attachment of this network changes.
+     */
+    private int filterVersion = 0;
 
     protected ItemCache(ServerLevel level, List<NetworkNode<ItemHost, ItemCache>> networkNodes) {
         super(level, networkNodes);
@@ -38,23 +51,73 @@ public class ItemCache extends NetworkCache<ItemHost, ItemCache> {
     @Override
     protected void doTick() {
         for (var node : nodes) {
-            if (node.getHost().isTicking()) {
+            if (node.isTicking()) {
                 node.getHost().tickMovingItems();
             }
         }
 
         for (var node : nodes) {
-            if (node.getHost().isTicking()) {
+            if (node.isTicking()) {
                 node.getHost().tickAttachments();
             }
         }
     }
 
+    void onFilterChanged() {
+        filterVersion++;
+    }
+
+    int getFilterVersion() {
+        return filterVersion;
+    }
+
+    @Override
+    protected void inheritFrom(Reference2IntMap<ItemCache> predecessors) {
+        for (var predecessor : predecessors.keySet()) {
+            pathCache.inheritFrom(predecessor.pathCache, this);
+            contentIndex.inheritFrom(predecessor.contentIndex);
+        }
+    }
+
+    @Override
+    protected void onNodeLoadStateChanged(NetworkNode<ItemHost, ItemCache> node, boolean loaded) {
+        pathCache.onNodeLoadStateChanged(node, loaded);
+    }
+
+    /**
+     * Limit an insertion amount to respect the maximum amount of items in the inventory of an attachment, if it has one.
+     * Unless oversending is allowed, the items that are already traveling towards the inventory are counted as well.
+     */
+    static int limitToInventoryCap(@Nullable ItemAttachedIo io, SimulatedInsertionTarget target, int maxAmount) {
+        if (io == null || io.getType() == IoAttachmentType.EXTRACTOR || io.getMaxItemsInInventory() <= 0) {
+            return maxAmount;
+        }
+        boolean countInFlight = io.getOversendingMode() == OversendingMode.PREVENT_OVERSENDING;
+        return Math.min(maxAmount, target.getRemainingCapacity(io.getMaxItemsInInventory(), countInFlight));
+    }
+
+    /**
+     * Insert into the paths in order, closest first.
+     */
+    protected int insertList(NetworkNode<ItemHost, ItemCache> startingPoint, List<ItemPath> paths, ItemVariant variant,
+            int maxAmount, boolean simulate, double speedMultiplier) {
+        if (inserting) {
+            return 0;
+        }
+
+        closestOrder.reset(paths);
+        return insertList(startingPoint, closestOrder, variant, maxAmount, simulate, speedMultiplier, null, null, null);
+    }
+
     /**
      * @param checkedPathsConsumer Accepts how many paths were evaluated if not null. Ignored if null.
+     * @param startedItems         Receives the traveling items that were started if not null, so that they can be rolled back.
+     * @param hints                Destinations that recently rejected the variant are skipped if not null.
+     *                             Skipped paths still count as evaluated for round-robin.
      */
-    protected int insertList(NetworkNode<ItemHost, ItemCache> startingPoint, Iterable<ItemPath> paths, ItemVariant variant,
-            int maxAmount, boolean simulate, double speedMultiplier, @Nullable MaxParticipant checkedPathsConsumer) {
+    protected int insertList(NetworkNode<ItemHost, ItemCache> startingPoint, RoutingOrder paths, ItemVariant variant,
+            int maxAmount, boolean simulate, double speedMultiplier, @Nullable MaxParticipant checkedPathsConsumer,
+            @Nullable List<TravelingItem> startedItems, @Nullable RoutingHints hints) {
         Preconditions.checkArgument(!variant.isBlank(), "blank variant");
         Preconditions.checkArgument(maxAmount >= 0);
         Preconditions.checkArgument(startingPoint.getNetworkCache() == this, "Tried to insert into another network!");
@@ -65,33 +128,52 @@ public class ItemCache extends NetworkCache<ItemHost, ItemCache> {
 
         inserting = true;
         try {
+            paths.select(variant);
+            var hint = hints == null ? null : hints.get(paths.getPaths(), variant, TickHelper.getTickCounter());
             int totalInserted = 0;
             int nextPathIndex = 0;
-            for (var path : paths) {
+            for (int i = 0; i < paths.size(); ++i) {
+                int pathIndex = paths.pathIndex(i);
                 nextPathIndex++;
 
+                if (hint != null && hint.isRejected(pathIndex)) {
+                    continue;
+                }
+                var path = paths.getPaths().get(pathIndex);
+
                 // Check possible filter at the endpoint.
-                if (!path.getEndFilter(level).test(variant)) {
+                if (!path.endAccepts(level, variant)) {
                     continue;
                 }
                 // Don't schedule more items if the output is already stuffed.
-                if (path.getEndAttachment(level) instanceof ItemAttachedIo io && io.isStuffed()) {
+                var endAttachment = path.getEndAttachment(level) instanceof ItemAttachedIo io ? io : null;
+                if (endAttachment != null && endAttachment.isStuffed()) {
                     continue;
                 }
 
-                var simulatedTarget = path.getInsertionTarget(startingPoint.getHost().getPipe().getLevel());
+                var simulatedTarget = path.getInsertionTarget(level);
 
-                totalInserted += simulatedTarget.insert(variant, maxAmount - totalInserted, simulate, (v, amount) -> {
-                    var travelingItem = path.makeTravelingItem(v, amount, speedMultiplier);
+                int toInsert = limitToInventoryCap(endAttachment, simulatedTarget, maxAmount - totalInserted);
+                int inserted = toInsert <= 0 ? 0 : simulatedTarget.insert(variant, toInsert, simulate);
+                if (inserted == 0 && hint != null) {
+                    hint.reject(pathIndex);
+                }
+                if (!simulate && inserted > 0) {
+                    var travelingItem = path.makeTravelingItem(variant, inserted, speedMultiplier);
+                    travelingItem.targetSlot = simulatedTarget.getLastPlannedSlot();
                     startingPoint.getHost().addTravelingItem(travelingItem);
-                });
+                    if (startedItems != null) {
+                        startedItems.add(travelingItem);
+                    }
+                }
+                totalInserted += inserted;
                 if (totalInserted == maxAmount) {
                     break;
                 }
             }
 
             if (checkedPathsConsumer != null) {
-                checkedPathsConsumer.addEntry(nextPathIndex, simulate);
+                checkedPathsConsumer.addEntry(paths.getRoundRobinAdvance(nextPathIndex), simulate);
             }
 
             return totalInserted;
@@ -18,11 +18,10 @@
  */
 package dev.technici4n.moderndynamics.network.item;
 
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import dev.technici4n.moderndynamics.attachment.AttachmentItem;
 import dev.technici4n.moderndynamics.attachment.IoAttachmentType;
 import dev.technici4n.moderndynamics.attachment.attached.ItemAttachedIo;
+import dev.technici4n.moderndynamics.attachment.settings.RoutingMode;
 import dev.technici4n.moderndynamics.network.NetworkManager;
 import dev.technici4n.moderndynamics.network.NetworkNode;
 import dev.technici4n.moderndynamics.network.NodeHost;
@@ -34,21 +33,21 @@ import dev.technici4n.moderndynamics.util.DropHelper;
 import dev.technici4n.moderndynamics.util.ItemVariant;
 import dev.technici4n.moderndynamics.util.SerializationHelper;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.EnumSet;
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.Objects;
 import net.minecraft.core.Direction;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.Tag;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.util.Mth;
 import net.minecraft.world.item.ItemStack;
 import net.neoforged.neoforge.capabilities.BlockCapability;
 import net.neoforged.neoforge.capabilities.Capabilities;
 import net.neoforged.neoforge.items.IItemHandler;
 import net.neoforged.neoforge.items.ItemHandlerHelper;
-import net.neoforged.neoforge.items.wrapper.EmptyHandler;
 import org.jetbrains.annotations.Nullable;
 
 public class ItemHost extends NodeHost {
@@ -56,6 +55,18 @@ public class ItemHost extends NodeHost {
     private final List<TravelingItem> travelingItems = new ArrayList<>();
     private final List<ClientTravelingItem> clientTravelingItems = new ArrayList<>();
     private final long[] lastOperationTick = new long[6];
+    /**
+     * Last time the source of a backing-off extractor was checked for changes.
+     */
+    private final long[] lastIdleCheckTick = new long[6];
+    /**
+     * Per-side state reused by every extractor and attractor operation, so that steady-state operations don't allocate.
+     */
+    private final SideOperation[] sideOperations = new SideOperation[6];
+    /**
+     * Maximum number of slots not known to hold matching items that an extractor checks in each operation.
+     */
+    private static final int DISCOVERY_SLOTS_PER_OPERATION = 64;
 
     public ItemHost(PipeBlockEntity pipe) {
         super(pipe);
@@ -105,7 +116,7 @@ public class ItemHost extends NodeHost {
                 var cache = node.getNetworkCache();
                 var paths = cache.pathCache.getPaths(node, side.getOpposite());
                 double speedupFactor = getAttachment(side) instanceof ItemAttachedIo io ? io.getItemSpeedupFactor() : 1;
-                return cache.insertList(node, paths, resource, maxAmount, simulate, speedupFactor, null);
+                return cache.insertList(node, paths, resource, maxAmount, simulate, speedupFactor);
             } else {
                 // The node can be null if the pipe was just placed, and not initialized yet.
                 return 0;
@@ -113,20 +124,6 @@ public class ItemHost extends NodeHost {
         });
     }
 
-    /**
-     * Storage used by extractors. It respects routing mode.
-     */
-    private InsertionOnlyItemHandler buildExtractorNetworkInjectStorage(Direction side, ItemAttachedIo extractor,
-            @Nullable MaxParticipant maxIndexParticipant) {
-        double speedupFactor = extractor.getItemSpeedupFactor();
-        NetworkNode<ItemHost, ItemCache> node = findNode();
-        var cache = node.getNetworkCache();
-        var paths = rearrangePaths(cache.pathCache.getPaths(node, side.getOpposite()), extractor);
-        return new InsertionOnlyItemHandler((resource, maxAmount, simulate) -> {
-            return cache.insertList(node, paths, resource, maxAmount, simulate, speedupFactor, maxIndexParticipant);
-        });
-    }
-
     protected EnumSet<Direction> getInventoryConnections() {
         return SerializationHelper.directionsFromMask((byte) inventoryConnections);
     }
@@ -135,41 +132,52 @@ public class ItemHost extends NodeHost {
     protected IItemHandler getAdjacentStorage(Direction side, boolean checkAttachments) {
         if ((inventoryConnections & (1 << side.get3DDataValue())) > 0 && (pipeConnections & (1 << side.get3DDataValue())) == 0
                 && (!checkAttachments || allowItemConnection(side))) {
-            return pipe.getLevel().getCapability(Capabilities.ItemHandler.BLOCK, pipe.getBlockPos().relative(side), side.getOpposite());
+            return getAdjacentCapability(Capabilities.ItemHandler.BLOCK, side);
         }
         return null;
     }
 
-    private Iterable<ItemPath> rearrangePaths(List<ItemPath> path, ItemAttachedIo io) {
-        if (path.size() <= 1) {
-            return path;
+    private void resetRoutingOrder(RoutingOrder order, List<ItemPath> paths, @Nullable DestinationIndex destinationIndex,
+            ItemAttachedIo io) {
+        int roundRobinIndex = 0;
+        if (paths.size() > 1 && io.getRoutingMode() == RoutingMode.ROUND_ROBIN) {
+            roundRobinIndex = io.getRoundRobinIndex(paths.size());
         }
+        order.reset(paths, destinationIndex, io.getRoutingMode(), roundRobinIndex, pipe.getLevel());
+    }
 
-        return switch (io.getRoutingMode()) {
-        case CLOSEST -> path;
-        case FURTHEST -> Lists.reverse(path);
-        case RANDOM -> {
-            var pathCopy = new ArrayList<>(path);
-            Collections.shuffle(pathCopy);
-            yield pathCopy;
-        }
-        case ROUND_ROBIN -> {
-            int startIndex = io.getRoundRobinIndex(path.size());
-            yield Iterables.concat(
-                    path.subList(startIndex, path.size()),
-                    path.subList(0, startIndex));
+    private SideOperation getSideOperation(Direction side) {
+        var operation = sideOperations[side.get3DDataValue()];
+        if (operation == null) {
+            operation = new SideOperation();
+            sideOperations[side.get3DDataValue()] = operation;
         }
-        };
+        return operation;
     }
 
     public void tickAttachments() {
         long currentTick = TickHelper.getTickCounter();
-        for (var side : Direction.values()) {
+        for (int i = 0; i < 6; ++i) {
+            var side = Direction.from3DDataValue(i);
             var attachment = getAttachment(side);
             if (attachment instanceof ItemAttachedIo itemAttachedIo && itemAttachedIo.isEnabledViaRedstone(pipe)) {
-                if (currentTick - lastOperationTick[side.get3DDataValue()] < itemAttachedIo.getItemOperationTickDelay())
+                long elapsed = currentTick - lastOperationTick[i];
+                int delay = itemAttachedIo.getItemOperationTickDelay();
+                if (elapsed < delay)
                     continue;
-                lastOperationTick[side.get3DDataValue()] = currentTick;
+                // Stuffed attachments have their own retry schedule, don't delay them further.
+                if (!itemAttachedIo.isStuffed() && elapsed < itemAttachedIo.getEffectiveItemOperationTickDelay()) {
+                    // Backing off: only check whether the source changed, at the normal operation rate.
+                    if (currentTick - lastIdleCheckTick[i] < delay)
+                        continue;
+                    lastIdleCheckTick[i] = currentTick;
+                    var adjStorage = getAdjacentStorage(side, false);
+                    if (adjStorage == null
+                            || !itemAttachedIo.checkIdleSourceFingerprint(computeFingerprint(adjStorage, getSideOperation(side).discoverySlot)))
+                        continue;
+                }
+                lastOperationTick[i] = currentTick;
+                lastIdleCheckTick[i] = currentTick;
                 if (itemAttachedIo.getType() == IoAttachmentType.EXTRACTOR) {
                     tickExtractor(side, itemAttachedIo);
                 } else if (itemAttachedIo.getType() == IoAttachmentType.ATTRACTOR) {
@@ -180,42 +188,84 @@ public class ItemHost extends NodeHost {
     }
 
     private void tickExtractor(Direction side, ItemAttachedIo extractor) {
+        NetworkNode<ItemHost, ItemCache> node = findNode();
+        var operation = getSideOperation(side);
+
         if (extractor.isStuffed()) {
             // Move from stuffed items to network
-            var maxParticipant = new MaxParticipant();
-
-            if (extractor.moveStuffedToStorage(buildExtractorNetworkInjectStorage(side, extractor, maxParticipant),
-                    extractor.getMaxItemsExtracted()) > 0) {
-                extractor.incrementRoundRobin(maxParticipant.getMax());
-                pipe.setChanged();
-                if (!extractor.isStuffed()) {
-                    pipe.sync();
+            long currentTick = TickHelper.getTickCounter();
+            if (!extractor.isStuffedRetryDue(currentTick)) {
+                return;
+            }
+            operation.startExtraction(node, side, extractor);
+            try {
+                boolean moved = extractor.moveStuffedToStorage(operation.storage, extractor.getMaxItemsExtracted()) > 0;
+                extractor.onStuffedRetry(moved, currentTick);
+                if (moved) {
+                    extractor.incrementRoundRobin(operation.maxParticipant.getMax());
+                    pipe.setChanged();
+                    if (!extractor.isStuffed()) {
+                        pipe.sync();
+                    }
                 }
+            } finally {
+                operation.finish();
             }
         } else {
             var adjStorage = getAdjacentStorage(side, false);
-            if (adjStorage == null)
+            if (adjStorage == null) {
+                extractor.onItemOperation(true, 0);
                 return;
+            }
 
-            var maxParticipant = new MaxParticipant();
+            operation.startExtraction(node, side, extractor);
+            try {
+                if (extract(adjStorage, operation, extractor, extractor.getMaxItemsExtracted()) > 0) {
+                    extractor.incrementRoundRobin(operation.maxParticipant.getMax());
+                    extractor.onItemOperation(false, 0);
+                } else if (operation.hasScannedAllSlots()) {
+                    // Only back off once discovery went through the whole source, not after every window.
+                    extractor.onItemOperation(true, computeFingerprint(adjStorage, operation.discoverySlot));
+                }
+            } finally {
+                operation.finish();
+            }
+        }
+    }
 
-            if (move(
-                    adjStorage,
-                    buildExtractorNetworkInjectStorage(side, extractor, maxParticipant),
-                    extractor::matchesItemFilter,
-                    extractor.getMaxItemsExtracted()) > 0) {
-                extractor.incrementRoundRobin(maxParticipant.getMax());
+    /**
+     * Cheap fingerprint of the slots that the next discovery pass checks, to detect changes without simulating extractions.
+     * Only this window is hashed so that idle checks stay cheap on large inventories. Changes elsewhere are found once the backoff expires.
+     */
+    private static int computeFingerprint(IItemHandler storage, int firstSlot) {
+        int slots = storage.getSlots();
+        int fingerprint = slots;
+        int window = Math.min(slots, DISCOVERY_SLOTS_PER_OPERATION);
+        for (int i = 0; i < window; ++i) {
+            var stack = storage.getStackInSlot((firstSlot + i) % slots);
+            if (!stack.isEmpty()) {
+                fingerprint = fingerprint * 31 + System.identityHashCode(stack.getItem());
+                fingerprint = fingerprint * 31 + stack.getCount();
+                fingerprint = fingerprint * 31 + Objects.hashCode(stack.getTag());
+            } else {
+                fingerprint *= 31;
             }
         }
+        return fingerprint;
     }
 
     public void tickAttractor(Direction side, ItemAttachedIo attractor) {
         if (attractor.isStuffed()) {
             // Move from stuffed items to target
+            long currentTick = TickHelper.getTickCounter();
+            if (!attractor.isStuffedRetryDue(currentTick))
+                return;
             var adjStorage = getAdjacentStorage(side, false);
             if (adjStorage == null)
                 return;
-            if (attractor.moveStuffedToStorage(adjStorage, attractor.getMaxItemsExtracted()) > 0) {
+            boolean moved = attractor.moveStuffedToStorage(adjStorage, attractor.getMaxItemsExtracted()) > 0;
+            attractor.onStuffedRetry(moved, currentTick);
+            if (moved) {
                 pipe.setChanged();
                 if (!attractor.isStuffed()) {
                     pipe.sync();
@@ -229,40 +279,44 @@ public class ItemHost extends NodeHost {
 
             NetworkNode<ItemHost, ItemCache> thisNode = findNode();
             var cache = thisNode.getNetworkCache();
-            var pathCache = cache.pathCache;
-            var paths = rearrangePaths(pathCache.getPaths(thisNode, side.getOpposite()), attractor);
+            var operation = getSideOperation(side);
+            var paths = operation.order;
+            // Attractors don't know which item they will pull, so the destination index doesn't help here.
+            resetRoutingOrder(paths, cache.pathCache.getPaths(thisNode, side.getOpposite()), null, attractor);
 
             int maxTransfer = attractor.getMaxItemsExtracted();
             int toTransfer = maxTransfer;
 
+            long tick = TickHelper.getTickCounter();
             int nextPathIndex = 0;
-            for (var path : paths) {
+            for (int i = 0; i < paths.size(); ++i) {
+                var path = paths.get(i);
                 nextPathIndex++;
 
                 // Don't allow attractors to pull from other attractors
                 if (path.getEndAttachment(cache.level) instanceof ItemAttachedIo io && io.getType() == IoAttachmentType.ATTRACTOR) {
                     continue;
                 }
+                // Skip inventories that were recently seen without anything to pull.
+                if (!cache.contentIndex.mayContain(path.targetPos, path.getTargetBlockSide(), attractor, tick)) {
+                    continue;
+                }
 
-                var extractTarget = pipe.getLevel().getCapability(Capabilities.ItemHandler.BLOCK, path.targetPos, path.getTargetBlockSide());
+                var extractTarget = path.getInsertionTarget(cache.level).getStorage();
                 if (extractTarget != null) {
-                    // Make sure to check the filter at the endpoint.
-                    var endpointFilter = path.getEndFilter(cache.level);
-
-                    InsertionOnlyItemHandler insertStorage = new InsertionOnlyItemHandler((variant, maxAmount, simulate) -> {
-                        return insertTarget.insert(variant, maxAmount, simulate, (v, a) -> {
-                            var reversedPath = path.reversed();
-                            var travelingItem = reversedPath.makeTravelingItem(v, a, attractor.getItemSpeedupFactor());
-                            reversedPath.getStartingPoint(cache.level).getHost().addTravelingItem(travelingItem);
-                        });
-                    });
-                    toTransfer -= move(
-                            extractTarget,
-                            insertStorage,
-                            v -> attractor.matchesItemFilter(v) && endpointFilter.test(v),
-                            toTransfer);
+                    var contents = cache.contentIndex.getEntry(path.targetPos, path.getTargetBlockSide());
+                    contents.startScan();
+                    operation.startAttraction(thisNode, attractor, path, insertTarget, contents);
+                    try {
+                        // Make sure to check the filter at the endpoint.
+                        toTransfer -= move(extractTarget, operation, attractor, path, toTransfer);
+                    } finally {
+                        operation.finish();
+                    }
                     if (toTransfer == 0)
                         break;
+                    // The scan went through every slot, so it saw everything that the inventory contains.
+                    contents.finishScan(tick);
                 }
             }
 
@@ -272,26 +326,108 @@ public class ItemHost extends NodeHost {
         }
     }
 
-    private int move(IItemHandler from, IItemHandler to, Predicate<ItemVariant> predicate, int maxAmount) {
-        var moved = 0;
-        for (int i = 0; i < from.getSlots(); i++) {
-            var extracted = from.extractItem(i, maxAmount, true);
-            if (!extracted.isEmpty()) {
-                var variant = ItemVariant.of(extracted);
-                if (predicate.test(variant)) {
-                    var overflow = ItemHandlerHelper.insertItemStacked(to, extracted, true);
-                    var likelyToFit = extracted.getCount() - overflow.getCount();
-                    if (likelyToFit > 0) {
-                        extracted = from.extractItem(i, likelyToFit, false);
-                        overflow = ItemHandlerHelper.insertItemStacked(to, extracted, false);
-                        moved += extracted.getCount() - overflow.getCount();
-                    }
+    /**
+     * Move items from the storage adjacent to an extractor to the network.
+     * Slots that are known to hold matching items are tried first, starting from where the previous operation stopped.
+     * A limited number of other slots is then scanned to discover new matching items, so that large and mostly empty
+     * (or mostly filtered out) inventories are not scanned entirely by every operation.
+     */
+    private int extract(IItemHandler from, SideOperation to, ItemAttachedIo extractor, int maxAmount) {
+        int slots = from.getSlots();
+        to.validateSlots(extractor, slots);
+        var productiveSlots = to.productiveSlots;
+        int moved = 0;
+
+        // Known productive slots, from the cursor to the end and then from the start to the cursor.
+        int start = to.resumeSlot;
+        for (int pass = 0; pass < 2 && moved < maxAmount; ++pass) {
+            int end = pass == 0 ? slots : start;
+            int slot = productiveSlots.nextSetBit(pass == 0 ? start : 0);
+            for (; slot >= 0 && slot < end && moved < maxAmount; slot = productiveSlots.nextSetBit(slot + 1)) {
+                int slotMoved = moveFromSlot(from, slot, to, extractor, null, maxAmount - moved);
+                if (slotMoved < 0) {
+                    productiveSlots.clear(slot);
+                } else {
+                    moved += slotMoved;
+                    to.resumeSlot = slot;
                 }
             }
         }
+
+        // Discovery of other slots.
+        int budget = Math.min(slots, DISCOVERY_SLOTS_PER_OPERATION);
+        for (int i = 0; i < budget && moved < maxAmount; ++i) {
+            int slot = to.discoverySlot < slots ? to.discoverySlot : 0;
+            to.discoverySlot = slot + 1;
+            if (productiveSlots.get(slot)) {
+                continue;
+            }
+
+            int slotMoved = moveFromSlot(from, slot, to, extractor, null, maxAmount - moved);
+            if (slotMoved >= 0) {
+                productiveSlots.set(slot);
+                moved += slotMoved;
+            }
+        }
+        to.unproductiveSlots = moved > 0 ? 0 : Math.min(slots, to.unproductiveSlots + budget);
+
+        return moved;
+    }
+
+    /**
+     * Move items from a storage to the network side of an operation.
+     *
+     * @param endPath If not null, the filter at the end of this path must also accept the moved items.
+     */
+    private int move(IItemHandler from, SideOperation to, ItemAttachedIo io, @Nullable ItemPath endPath, int maxAmount) {
+        int moved = 0;
+        for (int i = 0; i < from.getSlots() && moved < maxAmount; i++) {
+            moved += Math.max(0, moveFromSlot(from, i, to, io, endPath, maxAmount - moved));
+        }
         return moved;
     }
 
+    /**
+     * Move items from a single slot to the network side of an operation.
+     * The insertion is planned and committed in a single pass, before the real extraction.
+     * In the rare case where the real extraction doesn't match the simulated one, the excess insertion is rolled back.
+     *
+     * @return The amount of moved items, or -1 if the slot doesn't contain any items that pass the filters.
+     */
+    private int moveFromSlot(IItemHandler from, int slot, SideOperation to, ItemAttachedIo io, @Nullable ItemPath endPath, int maxAmount) {
+        var available = from.extractItem(slot, maxAmount, true);
+        if (available.isEmpty()) {
+            return -1;
+        }
+
+        var variant = ItemVariant.of(available);
+        to.recordContents(variant);
+        if (!io.matchesItemFilter(variant) || endPath != null && !endPath.endAccepts((ServerLevel) pipe.getLevel(), variant)) {
+            return -1;
+        }
+        int committed = to.commit(variant, available.getCount());
+        if (committed <= 0) {
+            return 0;
+        }
+
+        var extracted = from.extractItem(slot, committed, false);
+        int extractedAmount = variant.matches(extracted) ? extracted.getCount() : 0;
+        to.onExtracted(extracted.getCount());
+
+        if (extractedAmount < committed) {
+            to.rollback(committed - extractedAmount);
+
+            if (extractedAmount == 0 && !extracted.isEmpty()) {
+                // Extracted something else entirely: give it back.
+                var leftover = ItemHandlerHelper.insertItemStacked(from, extracted, false);
+                if (!leftover.isEmpty()) {
+                    DropHelper.dropStack(pipe, ItemVariant.of(leftover), leftover.getCount());
+                }
+            }
+        }
+        return extractedAmount;
+    }
+
     public void tickMovingItems() {
         if (travelingItems.isEmpty()) {
             return;
@@ -314,6 +450,10 @@ public class ItemHost extends NodeHost {
             }
         }
 
+        // List of items that reached their target storage, delivered together at the end.
+        @Nullable
+        List<TravelingItem> arrivals = null;
+
         for (var travelingItem : movedOut) {
             int newIndex = (int) travelingItem.traveledDistance;
 
@@ -322,18 +462,16 @@ public class ItemHost extends NodeHost {
                 // Prefer ignoring an attachment over dropping the item on the ground.
                 boolean checkAttachments = travelingItem.strategy != FailedInsertStrategy.DROP;
                 var side = travelingItem.path.path[newIndex];
-                var storage = getAdjacentStorage(side, checkAttachments);
-                if (storage == null) {
-                    storage = EmptyHandler.INSTANCE;
-                }
-                int inserted = 0;
                 // Check filter.
                 if (!checkAttachments || !(getAttachment(side) instanceof ItemAttachedIo io) ||
                         io.matchesItemFilter(travelingItem.variant) && io.isEnabledViaRedstone(pipe)) {
-                    var overflow = ItemHandlerHelper.insertItemStacked(storage, travelingItem.variant.toStack(travelingItem.amount), false);
-                    inserted = travelingItem.amount - overflow.getCount();
+                    if (arrivals == null) {
+                        arrivals = new ArrayList<>();
+                    }
+                    arrivals.add(travelingItem);
+                } else {
+                    finishTravel(travelingItem, 0);
                 }
-                finishTravel(travelingItem, inserted);
             } else {
                 // Otherwise: must be inserting into another pipe. Check that the connection exists.
                 var adjPipeDirection = travelingItem.path.path[newIndex];
@@ -359,20 +497,93 @@ public class ItemHost extends NodeHost {
             }
         }
 
+        if (arrivals != null) {
+            deliverArrivals(arrivals);
+        }
+
         pipe.setChanged();
         pipe.sync(false);
     }
 
+    /**
+     * Insert the items that reached the end of their path this tick.
+     * Arrivals of the same variant into the same storage are inserted together, into the slots that were planned for them first,
+     * instead of scanning the slots of the storage for each of them.
+     */
+    private void deliverArrivals(List<TravelingItem> arrivals) {
+        var level = pipe.getLevel();
+        var contentIndex = findNode().getNetworkCache().contentIndex;
+
+        for (int i = 0; i < arrivals.size(); ++i) {
+            var first = arrivals.get(i);
+            if (first == null) {
+                continue; // already delivered with a previous arrival
+            }
+
+            int total = 0;
+            for (int j = i; j < arrivals.size(); ++j) {
+                var other = arrivals.get(j);
+                if (other != null && isSameDelivery(first, other)) {
+                    total += other.amount;
+                }
+            }
+
+            var storage = getAdjacentStorage(first.path.getLastDirection(), first.strategy != FailedInsertStrategy.DROP);
+            int inserted = 0;
+            if (storage != null) {
+                var target = first.path.getInsertionTarget(level);
+                // Planned slots first, then a search if they didn't accept everything.
+                for (int j = i; j < arrivals.size() && inserted < total; ++j) {
+                    var other = arrivals.get(j);
+                    if (other != null && other.targetSlot >= 0 && isSameDelivery(first, other)) {
+                        inserted += target.deliverToSlot(storage, other.targetSlot, first.variant, total - inserted);
+                    }
+                }
+                if (inserted < total) {
+                    inserted += target.deliver(storage, first.variant, total - inserted);
+                }
+            }
+            if (inserted > 0) {
+                contentIndex.getEntry(first.path.targetPos, first.path.getTargetBlockSide()).record(first.variant);
+                // The storage accepts items again: an attachment stuffed on the same side might be able to drain now.
+                if (getAttachment(first.path.getLastDirection()) instanceof ItemAttachedIo io && io.isStuffed()) {
+                    io.wakeStuffed();
+                }
+            }
+
+            // Split the inserted amount between the arrivals, in order.
+            for (int j = i; j < arrivals.size(); ++j) {
+                var other = arrivals.get(j);
+                if (other != null && isSameDelivery(first, other)) {
+                    int share = Math.min(other.amount, inserted);
+                    inserted -= share;
+                    arrivals.set(j, null);
+                    finishTravel(other, share);
+                }
+            }
+        }
+    }
+
+    private static boolean isSameDelivery(TravelingItem a, TravelingItem b) {
+        return a.path.getLastDirection() == b.path.getLastDirection()
+                && (a.strategy == FailedInsertStrategy.DROP) == (b.strategy == FailedInsertStrategy.DROP)
+                && a.variant.equals(b.variant);
+    }
+
     private void finishTravel(TravelingItem item, int inserted) {
         // In any case, remove the item from the simulated insertion target
-        item.path.getInsertionTarget(pipe.getLevel()).stopAwaiting(item.variant, item.amount);
+        var target = item.path.getInsertionTarget(pipe.getLevel());
+        target.stopAwaiting(item.variant, item.amount);
+        if (inserted > 0) {
+            target.onDelivered(inserted);
+        }
         int leftover = item.amount - inserted;
 
         // Try to stuff first!
         var attachment = getAttachment(item.path.path[item.getPathLength() - 1]);
         if (leftover > 0 && attachment instanceof ItemAttachedIo io && io.getType() != IoAttachmentType.FILTER) {
             boolean wasStuffed = io.isStuffed();
-            io.getStuffedItems().merge(item.variant, item.amount, Integer::sum);
+            io.getStuffedItems().mergeInt(item.variant, leftover, Integer::sum);
             pipe.setChanged();
             if (wasStuffed != io.isStuffed()) {
                 pipe.sync();
@@ -387,7 +598,7 @@ public class ItemHost extends NodeHost {
                         item.speedMultiplier,
                         item.getPathLength() - 1 - Math.floor(item.traveledDistance)));
             } else {
-                DropHelper.dropStack(pipe, item.variant, item.amount - inserted);
+                DropHelper.dropStack(pipe, item.variant, leftover);
             }
         }
     }
@@ -426,23 +637,27 @@ public class ItemHost extends NodeHost {
     }
 
     @Override
-    public void removeSelf() {
-        super.removeSelf();
-        for (var travelingItem : travelingItems) {
-            travelingItem.path.getInsertionTarget(pipe.getLevel()).stopAwaiting(travelingItem.variant, travelingItem.amount);
-        }
+    protected void onLeftNetwork() {
+        super.onLeftNetwork();
+        stopAwaitingTravelingItems();
     }
 
     @Override
     public void onRemoved() {
         super.onRemoved();
+        stopAwaitingTravelingItems();
         for (var travelingItem : travelingItems) {
-            travelingItem.path.getInsertionTarget(pipe.getLevel()).stopAwaiting(travelingItem.variant, travelingItem.amount);
             DropHelper.dropStack(pipe, travelingItem.variant, travelingItem.amount);
         }
         travelingItems.clear();
     }
 
+    private void stopAwaitingTravelingItems() {
+        for (var travelingItem : travelingItems) {
+            travelingItem.path.getInsertionTarget(pipe.getLevel()).stopAwaiting(travelingItem.variant, travelingItem.amount);
+        }
+    }
+
     public void addTravelingItem(TravelingItem travelingItem) {
         this.travelingItems.add(travelingItem);
         pipe.setChanged();
@@ -451,6 +666,37 @@ public class ItemHost extends NodeHost {
     @Override
     protected void doUpdate() {
         updateConnections();
+        wakeStuffedAttachments();
+        // An attachment might have been added, replaced or removed.
+        onFilterChanged();
+    }
+
+    /**
+     * Called when the filter configuration of an item attachment of this pipe changes, to invalidate the destination indices
+     * of the network. Client-side copies of the attachments don't belong to any network.
+     */
+    public void onFilterChanged() {
+        if (pipe.hasLevel() && !pipe.getLevel().isClientSide()) {
+            NetworkNode<ItemHost, ItemCache> node = findNode();
+
+            if (node != null && node.getHost() == this) {
+                node.getNetworkCache().onFilterChanged();
+            }
+        }
+    }
+
+    @Override
+    public void onNeighborChanged() {
+        wakeStuffedAttachments();
+    }
+
+    private void wakeStuffedAttachments() {
+        // A neighbor changed, so the storages next to stuffed attachments might accept items again.
+        for (var side : Direction.values()) {
+            if (getAttachment(side) instanceof ItemAttachedIo io && io.isStuffed()) {
+                io.wakeStuffed();
+            }
+        }
     }
 
     public void gatherCapabilities() {
@@ -459,7 +705,7 @@ public class ItemHost extends NodeHost {
         for (int i = 0; i < 6; ++i) {
             if ((inventoryConnections & (1 << i)) > 0 && (pipeConnections & (1 << i)) == 0) {
                 Direction dir = Direction.from3DDataValue(i);
-                var adjacentCap = pipe.getLevel().getCapability(Capabilities.ItemHandler.BLOCK, pipe.getBlockPos().relative(dir), dir.getOpposite());
+                var adjacentCap = getAdjacentCapability(Capabilities.ItemHandler.BLOCK, dir);
 
                 if (adjacentCap == null) {
                     // Remove the direction from the bitmask
@@ -561,4 +807,173 @@ public class ItemHost extends NodeHost {
     public List<ClientTravelingItem> getClientTravelingItems() {
         return clientTravelingItems;
     }
+
+    /**
+     * Network-side storage of an extractor or attractor operation.
+     * Extractions insert into the network, following the routing order; attractions insert into the attractor's target,
+     * with the items traveling back along {@link #attractedPath}.
+     */
+    private class SideOperation implements InsertionOnlyItemHandler.InsertionHandler {
+        private final RoutingOrder order = new RoutingOrder();
+        private final MaxParticipant maxParticipant = new MaxParticipant();
+        private final InsertionOnlyItemHandler storage = new InsertionOnlyItemHandler(this);
+        private final RoutingHints hints = new RoutingHints();
+        /*
+         * Extraction state. Productive slots are the slots of the adjacent storage that were last seen holding matching items.
+         * They are revalidated when they are accessed, and cleared entirely if the extractor, its filter or the slot count changes.
+         * Capability lookups might return a new wrapper every time, so the storage itself is not compared.
+         */
+        @Nullable
+        private ItemAttachedIo slotsExtractor;
+        private int slotsCount = -1;
+        private int slotsFilterVersion;
+        private final BitSet productiveSlots = new BitSet();
+        private int resumeSlot = 0;
+        private int discoverySlot = 0;
+        /**
+         * Number of slots checked by discovery since items were last extracted.
+         */
+        private int unproductiveSlots = 0;
+        /**
+         * Traveling items started by the last {@link #commit}.
+         */
+        private final List<TravelingItem> startedItems = new ArrayList<>();
+        private NetworkNode<ItemHost, ItemCache> node;
+        private ItemAttachedIo io;
+        @Nullable
+        private ItemPath attractedPath;
+        @Nullable
+        private SimulatedInsertionTarget attractorTarget;
+        /**
+         * Where to record the variants seen in the source inventory.
+         */
+        @Nullable
+        private ContentIndex.Entry contents;
+        /**
+         * Simulated insertion target of the source inventory, if it exists, to keep its item count up to date.
+         */
+        @Nullable
+        private SimulatedInsertionTarget sourceTarget;
+
+        private void startExtraction(NetworkNode<ItemHost, ItemCache> node, Direction side, ItemAttachedIo extractor) {
+            this.node = node;
+            this.io = extractor;
+            var cache = node.getNetworkCache();
+            var paths = cache.pathCache.getPaths(node, side.getOpposite());
+            var destinationIndex = cache.pathCache.getDestinationIndex(node, side.getOpposite(), cache.level);
+            resetRoutingOrder(order, paths, destinationIndex, extractor);
+            maxParticipant.reset();
+            contents = cache.contentIndex.getEntry(pipe.getBlockPos().relative(side), side.getOpposite());
+            sourceTarget = SimulatedInsertionTargets.getExistingTarget(cache.level, pipe.getBlockPos().relative(side), side.getOpposite());
+        }
+
+        private void validateSlots(ItemAttachedIo extractor, int slots) {
+            if (extractor != slotsExtractor || slots != slotsCount || extractor.getFilterVersion() != slotsFilterVersion) {
+                slotsExtractor = extractor;
+                slotsCount = slots;
+                slotsFilterVersion = extractor.getFilterVersion();
+                productiveSlots.clear();
+                resumeSlot = 0;
+                discoverySlot = 0;
+                unproductiveSlots = 0;
+            }
+        }
+
+        /**
+         * Return true if discovery went through every slot of the source since items were last extracted.
+         */
+        private boolean hasScannedAllSlots() {
+            return unproductiveSlots >= slotsCount;
+        }
+
+        private void startAttraction(NetworkNode<ItemHost, ItemCache> node, ItemAttachedIo attractor, ItemPath path,
+                SimulatedInsertionTarget target, ContentIndex.Entry contents) {
+            this.node = node;
+            this.io = attractor;
+            this.attractedPath = path;
+            this.attractorTarget = target;
+            this.contents = contents;
+            this.sourceTarget = path.getInsertionTarget(node.getNetworkCache().level);
+        }
+
+        private void finish() {
+            // Don't keep the network alive after it is rebuilt.
+            node = null;
+            io = null;
+            attractedPath = null;
+            attractorTarget = null;
+            contents = null;
+            sourceTarget = null;
+            startedItems.clear();
+        }
+
+        private void onExtracted(int amount) {
+            if (sourceTarget != null && amount > 0) {
+                sourceTarget.onExtracted(amount);
+            }
+        }
+
+        private void recordContents(ItemVariant variant) {
+            if (contents != null) {
+                contents.record(variant);
+            }
+        }
+
+        /**
+         * Insert into the network for real, remembering the started items.
+         */
+        private int commit(ItemVariant resource, int maxAmount) {
+            startedItems.clear();
+            return handle(resource, maxAmount, false);
+        }
+
+        /**
+         * Cancel part of the last {@link #commit}, starting from the last started item.
+         */
+        private void rollback(int amount) {
+            var level = (ServerLevel) pipe.getLevel();
+
+            for (int i = startedItems.size(); i-- > 0 && amount > 0;) {
+                var item = startedItems.get(i);
+                var host = item.path.getStartingPoint(level).getHost();
+                int cancelled = Math.min(amount, item.amount);
+
+                host.travelingItems.remove(item);
+                item.path.getInsertionTarget(level).stopAwaiting(item.variant, cancelled);
+                if (cancelled < item.amount) {
+                    var remainder = new TravelingItem(item.variant, item.amount - cancelled, item.path, item.strategy,
+                            item.speedMultiplier, item.traveledDistance);
+                    remainder.targetSlot = item.targetSlot;
+                    host.addTravelingItem(remainder);
+                }
+                host.pipe.setChanged();
+                amount -= cancelled;
+            }
+
+            startedItems.clear();
+        }
+
+        @Override
+        public int handle(ItemVariant resource, int maxAmount, boolean simulate) {
+            if (node == null) {
+                return 0;
+            }
+
+            if (attractedPath == null) {
+                return node.getNetworkCache().insertList(node, order, resource, maxAmount, simulate, io.getItemSpeedupFactor(),
+                        maxParticipant, startedItems, hints);
+            }
+
+            int toInsert = ItemCache.limitToInventoryCap(io, attractorTarget, maxAmount);
+            int inserted = toInsert <= 0 ? 0 : attractorTarget.insert(resource, toInsert, simulate);
+            if (!simulate && inserted > 0) {
+                var reversedPath = attractedPath.reversed();
+                var travelingItem = reversedPath.makeTravelingItem(resource, inserted, io.getItemSpeedupFactor());
+                travelingItem.targetSlot = attractorTarget.getLastPlannedSlot();
+                reversedPath.getStartingPoint(node.getNetworkCache().level).getHost().addTravelingItem(travelingItem);
+                startedItems.add(travelingItem);
+            }
+            return inserted;
+        }
+    }
 }
@@ -21,9 +21,8 @@ package dev.technici4n.moderndynamics.network.item;
 import dev.technici4n.moderndynamics.attachment.attached.AttachedAttachment;
 import dev.technici4n.moderndynamics.attachment.attached.ItemAttachedIo;
 import dev.technici4n.moderndynamics.network.NetworkNode;
-import dev.technici4n.moderndynamics.pipe.PipeBlockEntity;
+import dev.technici4n.moderndynamics.network.TickHelper;
 import dev.technici4n.moderndynamics.util.ItemVariant;
-import java.util.function.Predicate;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.server.level.ServerLevel;
@@ -41,16 +40,31 @@ public class ItemPath {
      */
     public final Direction[] path;
     private @Nullable ItemPath reversed;
+    /*
+     * Endpoint metadata, resolved once and then reused by every operation.
+     * The end node survives its host being unloaded and reloaded, and is only looked up again if it is no longer valid.
+     * The insertion target is looked up again if it was evicted.
+     */
+    @Nullable
+    private NetworkNode<ItemHost, ItemCache> endNode;
+    @Nullable
+    private SimulatedInsertionTarget insertionTarget;
 
     public ItemPath(BlockPos startingPos, BlockPos targetPos, Direction[] path) {
-        this(startingPos, targetPos, path, null);
+        this(startingPos, targetPos, path, null, null);
+    }
+
+    ItemPath(BlockPos startingPos, BlockPos targetPos, Direction[] path, NetworkNode<ItemHost, ItemCache> endNode) {
+        this(startingPos, targetPos, path, null, endNode);
     }
 
-    private ItemPath(BlockPos startingPos, BlockPos targetPos, Direction[] path, @Nullable ItemPath reversed) {
+    private ItemPath(BlockPos startingPos, BlockPos targetPos, Direction[] path, @Nullable ItemPath reversed,
+            @Nullable NetworkNode<ItemHost, ItemCache> endNode) {
         this.startingPos = startingPos;
         this.targetPos = targetPos;
         this.path = path;
         this.reversed = reversed;
+        this.endNode = endNode;
     }
 
     public NetworkNode<ItemHost, ItemCache> getStartingPoint(ServerLevel level) {
@@ -58,7 +72,13 @@ public class ItemPath {
     }
 
     public SimulatedInsertionTarget getInsertionTarget(Level world) {
-        return SimulatedInsertionTargets.getTarget(world, targetPos, getTargetBlockSide());
+        var target = insertionTarget;
+        if (target == null || target.isEvicted()) {
+            target = insertionTarget = SimulatedInsertionTargets.getTarget(world, targetPos, getTargetBlockSide());
+        } else {
+            target.lastAccessTick = TickHelper.getTickCounter();
+        }
+        return target;
     }
 
     /**
@@ -86,27 +106,39 @@ public class ItemPath {
                 0);
     }
 
+    /**
+     * Return the host of the last pipe of the path, or null if it is not loaded.
+     */
+    @Nullable
+    private ItemHost getEndHost(ServerLevel level) {
+        var node = endNode;
+        if (node == null || node.getHost() == null || node.getHost().getPipe().isRemoved()) {
+            node = endNode = ItemHost.MANAGER.findNode(level, targetPos.relative(getTargetBlockSide()));
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.getHost();
+    }
+
     @Nullable
     AttachedAttachment getEndAttachment(ServerLevel level) {
-        var lastNode = ItemHost.MANAGER.findNode(level, targetPos.relative(getTargetBlockSide()));
-        var host = lastNode.getHost();
-        return host.getAttachment(getLastDirection());
+        var endHost = getEndHost(level);
+        if (endHost == null) {
+            return null;
+        }
+        return endHost.getAttachment(getLastDirection());
     }
 
     /**
-     * Return the predicate for the attachment at the very end of the pipe.
+     * Check the variant against the attachment at the very end of the pipe.
      */
-    Predicate<ItemVariant> getEndFilter(ServerLevel level) {
-        var endPipe = targetPos.relative(getTargetBlockSide());
-        if (level.getBlockEntity(endPipe) instanceof PipeBlockEntity pipe) {
-            if (pipe.getAttachment(getLastDirection()) instanceof ItemAttachedIo io) {
-                if (!io.isEnabledViaRedstone(pipe)) {
-                    return v -> false;
-                }
-                return io::matchesItemFilter;
-            }
+    boolean endAccepts(ServerLevel level, ItemVariant variant) {
+        var endHost = getEndHost(level);
+        if (endHost != null && endHost.getAttachment(getLastDirection()) instanceof ItemAttachedIo io) {
+            return io.isEnabledViaRedstone(endHost.getPipe()) && io.matchesItemFilter(variant);
         }
-        return v -> true;
+        return true;
     }
 
     public ItemPath reversed() {
@@ -115,7 +147,7 @@ public class ItemPath {
             for (int i = 0; i < path.length; ++i) {
                 reversedPath[path.length - i - 1] = path[i].getOpposite();
             }
-            reversed = new ItemPath(targetPos, startingPos, reversedPath, this);
+            reversed = new ItemPath(targetPos, startingPos, reversedPath, this, null);
         }
         return reversed;
     }
@@ -21,29 +21,192 @@ package dev.technici4n.moderndynamics.network.item;
 import com.google.common.collect.Lists;
 import dev.technici4n.moderndynamics.attachment.attached.AttachedInhibitor;
 import dev.technici4n.moderndynamics.network.NetworkNode;
+import dev.technici4n.moderndynamics.network.TickHelper;
 import it.unimi.dsi.fastutil.objects.Reference2LongMap;
 import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.function.BiPredicate;
 import net.minecraft.core.Direction;
+import net.minecraft.server.level.ServerLevel;
+import org.jetbrains.annotations.Nullable;
 
 public class ItemPathCache {
-    private final Map<SidedNode, List<ItemPath>> cache = new HashMap<>();
+    /**
+     * Maximum number of stale entries that get recomputed every tick.
+     */
+    private static final int MAX_STALE_REFRESHES_PER_TICK = 16;
+
+    /**
+     * Entries for each starting node, indexed by starting side. Indexing by node avoids allocating a key for every lookup.
+     */
+    private final Map<NetworkNode<ItemHost, ItemCache>, Entry[]> cache = new IdentityHashMap<>();
+    private long lastRefreshTick = -1;
+    private int refreshesThisTick = 0;
 
     public List<ItemPath> getPaths(NetworkNode<ItemHost, ItemCache> startingPoint, Direction startingSide) {
-        return cache.computeIfAbsent(new SidedNode(startingPoint, startingSide), ItemPathCache::computePaths);
+        var entries = cache.get(startingPoint);
+        if (entries == null) {
+            entries = new Entry[6];
+            cache.put(startingPoint, entries);
+        }
+        var entry = entries[startingSide.get3DDataValue()];
+
+        if (entry == null) {
+            entry = new Entry(computePaths(new SidedNode(startingPoint, startingSide)));
+            entries[startingSide.get3DDataValue()] = entry;
+        } else if (entry.stale && tryConsumeRefresh()) {
+            entry.paths = computePaths(new SidedNode(startingPoint, startingSide));
+            entry.stale = false;
+            entry.destinationIndex = null;
+        }
+
+        return entry.paths;
+    }
+
+    /**
+     * Return the destination index of the paths that {@link #getPaths} returns for the same starting point.
+     */
+    DestinationIndex getDestinationIndex(NetworkNode<ItemHost, ItemCache> startingPoint, Direction startingSide, ServerLevel level) {
+        var paths = getPaths(startingPoint, startingSide);
+        var entry = cache.get(startingPoint)[startingSide.get3DDataValue()];
+
+        int filterVersion = startingPoint.getNetworkCache().getFilterVersion();
+        if (entry.destinationIndex == null || !entry.destinationIndex.isValid(filterVersion)) {
+            entry.destinationIndex = new DestinationIndex(paths, level, filterVersion);
+        }
+        return entry.destinationIndex;
     }
 
     public void invalidate() {
         cache.clear();
     }
 
+    /**
+     * Mark all entries as stale after a node of the network was loaded or unloaded, so that they pick up the change within
+     * the refresh budget. Paths never go through dormant nodes, so the paths that end in or go through an unloaded node are dropped.
+     */
+    void onNodeLoadStateChanged(NetworkNode<ItemHost, ItemCache> node, boolean loaded) {
+        for (var mapEntry : cache.entrySet()) {
+            for (var entry : mapEntry.getValue()) {
+                if (entry != null) {
+                    if (!loaded) {
+                        var remainingPaths = filterPaths(mapEntry.getKey(), entry.paths, (start, path) -> !goesThrough(start, path, node));
+                        if (remainingPaths != entry.paths) {
+                            entry.paths = remainingPaths;
+                            entry.destinationIndex = null;
+                        }
+                    }
+                    entry.stale = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy the entries of a previous cache whose starting point is still part of the network, marking them as stale.
+     * Paths that no longer lead through the network, for example because they cross a removed pipe, are dropped.
+     */
+    void inheritFrom(ItemPathCache previous, ItemCache owner) {
+        for (var mapEntry : previous.cache.entrySet()) {
+            var startingPoint = mapEntry.getKey();
+            if (startingPoint.getNetworkCache() == owner) {
+                var entries = new Entry[6];
+                for (int i = 0; i < 6; ++i) {
+                    var entry = mapEntry.getValue()[i];
+                    if (entry != null) {
+                        entries[i] = new Entry(filterPaths(startingPoint, entry.paths, (start, path) -> isValid(start, path, owner)));
+                        entries[i].stale = true;
+                    }
+                }
+                cache.put(startingPoint, entries);
+            }
+        }
+    }
+
+    /**
+     * Return the paths that the filter keeps, or the list itself if it keeps all of them.
+     */
+    private static List<ItemPath> filterPaths(NetworkNode<ItemHost, ItemCache> startingPoint, List<ItemPath> paths,
+            BiPredicate<NetworkNode<ItemHost, ItemCache>, ItemPath> filter) {
+        List<ItemPath> keptPaths = null;
+        for (int i = 0; i < paths.size(); ++i) {
+            var path = paths.get(i);
+            if (filter.test(startingPoint, path)) {
+                if (keptPaths != null) {
+                    keptPaths.add(path);
+                }
+            } else if (keptPaths == null) {
+                keptPaths = new ArrayList<>(paths.subList(0, i));
+            }
+        }
+        return keptPaths == null ? paths : Collections.unmodifiableList(keptPaths);
+    }
+
+    /**
+     * Return true if the path still leads through loaded nodes of the network.
+     */
+    private static boolean isValid(NetworkNode<ItemHost, ItemCache> startingPoint, ItemPath path, ItemCache owner) {
+        if (startingPoint.isDormant()) {
+            return false;
+        }
+        var node = startingPoint;
+        // The first direction enters the starting pipe and the last one leaves the end pipe.
+        for (int i = 1; i < path.path.length - 1; ++i) {
+            node = getConnectedNode(node, path.path[i]);
+            if (node == null || node.isDormant()) {
+                return false;
+            }
+        }
+        return node.getNetworkCache() == owner;
+    }
+
+    /**
+     * Return true if the path starts, ends in or goes through the node, or if it can't be followed anymore.
+     */
+    private static boolean goesThrough(NetworkNode<ItemHost, ItemCache> startingPoint, ItemPath path, NetworkNode<ItemHost, ItemCache> node) {
+        var current = startingPoint;
+        for (int i = 1; i < path.path.length - 1 && current != node; ++i) {
+            current = getConnectedNode(current, path.path[i]);
+            if (current == null) {
+                return true;
+            }
+        }
+        return current == node;
+    }
+
+    @Nullable
+    private static NetworkNode<ItemHost, ItemCache> getConnectedNode(NetworkNode<ItemHost, ItemCache> node, Direction direction) {
+        for (var connection : node.getConnections()) {
+            if (connection.direction() == direction) {
+                return connection.target();
+            }
+        }
+        return null;
+    }
+
+    private boolean tryConsumeRefresh() {
+        long currentTick = TickHelper.getTickCounter();
+        if (currentTick != lastRefreshTick) {
+            lastRefreshTick = currentTick;
+            refreshesThisTick = 0;
+        }
+
+        if (refreshesThisTick < MAX_STALE_REFRESHES_PER_TICK) {
+            refreshesThisTick++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Compute the paths to all targets, closest first.
+     */
     private static List<ItemPath> computePaths(SidedNode startingPoint) {
         // First, gather all targets, sorted by priority.
         PriorityQueue<PqNode> pq = new PriorityQueue<>(Comparator.comparingLong(PqNode::distance));
@@ -80,6 +243,10 @@ public class ItemPathCache {
             }
 
             for (var connection : currentNode.getConnections()) {
+                if (connection.target().isDormant()) {
+                    continue; // items can't travel through unloaded pipes
+                }
+
                 long edgeWeight = 1;
                 if (currentNode.getHost().getAttachment(connection.direction()) instanceof AttachedInhibitor) {
                     edgeWeight += 1000;
@@ -99,8 +266,8 @@ public class ItemPathCache {
 
         // Build the paths
         List<ItemPath> computedPaths = new ArrayList<>(targets.size());
-        for (var pqTarget : targets) {
-            var target = pqTarget.sidedNode;
+        while (!targets.isEmpty()) {
+            var target = targets.poll().sidedNode;
             var side = target.side;
 
             if (target.node == startingPoint.node && side == startingPoint.side.getOpposite()) {
@@ -120,12 +287,28 @@ public class ItemPathCache {
             reversedPath.add(startingPoint.side);
             Direction[] path = Lists.reverse(reversedPath).toArray(Direction[]::new);
             var startPos = startingPoint.node.getHost().getPipe().getBlockPos().relative(startingPoint.side.getOpposite());
-            computedPaths.add(new ItemPath(startPos, adjPos, path));
+            computedPaths.add(new ItemPath(startPos, adjPos, path, target.node));
         }
 
         return Collections.unmodifiableList(computedPaths);
     }
 
+    private static class Entry {
+        private List<ItemPath> paths;
+        /**
+         * Stale entries were inherited from the cache of a previous network, or computed before a node was loaded or unloaded.
+         * Their paths still lead through the network, but they might not be the shortest ones anymore, and new targets are missing.
+         * They are still used, but they get recomputed on access as long as the per-tick budget allows it.
+         */
+        private boolean stale = false;
+        @Nullable
+        private DestinationIndex destinationIndex;
+
+        private Entry(List<ItemPath> paths) {
+            this.paths = paths;
+        }
+    }
+
     private record SidedNode(NetworkNode<ItemHost, ItemCache> node, Direction side) {
     }
 
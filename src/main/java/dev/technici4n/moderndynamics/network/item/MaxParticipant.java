@@ -27,6 +27,10 @@ public class MaxParticipant {
         }
     }
 
+    public void reset() {
+        max = 0;
+    }
+
     public int getMax() {
         return max;
     }
@@ -0,0 +1,85 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.network.item;
+
+import dev.technici4n.moderndynamics.util.ItemVariant;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Short-lived memory of the destinations that just rejected each variant, for a single source.
+ * Full destinations are skipped for {@link #REJECTION_TICKS} ticks instead of being simulated again by every operation,
+ * so that routing effectively resumes from the first destination that accepted the variant last time.
+ */
+final class RoutingHints {
+    private static final int REJECTION_TICKS = 10;
+    private static final int MAX_VARIANTS = 16;
+
+    private final Object2ObjectLinkedOpenHashMap<ItemVariant, Hint> hints = new Object2ObjectLinkedOpenHashMap<>();
+    /**
+     * The path list that the indices refer to, weakly referenced to avoid keeping a discarded network alive.
+     */
+    private WeakReference<List<ItemPath>> paths = new WeakReference<>(null);
+
+    /**
+     * Return the hint for a variant, creating it if needed, or clearing it if it expired.
+     */
+    Hint get(List<ItemPath> paths, ItemVariant variant, long tick) {
+        if (paths != this.paths.get()) {
+            // Path indices are meaningless for another path list.
+            this.paths = new WeakReference<>(paths);
+            hints.clear();
+        }
+
+        var hint = hints.getAndMoveToLast(variant);
+        if (hint == null) {
+            if (hints.size() >= MAX_VARIANTS) {
+                hints.removeFirst();
+            }
+            hint = new Hint(tick);
+            hints.put(variant, hint);
+        } else if (tick - hint.since > REJECTION_TICKS) {
+            hint.rejectedPaths.clear();
+            hint.since = tick;
+        }
+        return hint;
+    }
+
+    static final class Hint {
+        private final BitSet rejectedPaths = new BitSet();
+        /**
+         * Tick when the rejections started being recorded.
+         */
+        private long since;
+
+        private Hint(long since) {
+            this.since = since;
+        }
+
+        boolean isRejected(int pathIndex) {
+            return rejectedPaths.get(pathIndex);
+        }
+
+        void reject(int pathIndex) {
+            rejectedPaths.set(pathIndex);
+        }
+    }
+}
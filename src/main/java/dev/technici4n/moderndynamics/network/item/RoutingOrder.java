@@ -0,0 +1,315 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.network.item;
+
+import dev.technici4n.moderndynamics.attachment.settings.RoutingMode;
+import dev.technici4n.moderndynamics.util.ItemVariant;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.List;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.level.Level;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Order in which the paths of a routing operation are tried.
+ * The paths are never copied: each position is mapped to an index in the (closest first) path list,
+ * and the instance can be reused from one operation to the next.
+ *
+ * <p>
+ * If a {@link DestinationIndex} is provided, {@link #select} restricts the order to the candidate paths for an item.
+ * Round-robin still rotates over the whole path list, starting from the first candidate at or after the round-robin index.
+ *
+ * <p>
+ * {@link RoutingMode#BALANCED} tries the least loaded destinations first, according to the amount of items already traveling
+ * towards them. The selected paths are heapified, and popped lazily as positions are requested,
+ * so that an operation that succeeds with the first few destinations doesn't sort the whole list.
+ * The heap is kept for the next selection of the same operation if it selects the same paths: only the popped paths,
+ * which include the ones that received items, are pushed back with their new load.
+ */
+final class RoutingOrder {
+    private List<ItemPath> paths = List.of();
+    private RoutingMode mode = RoutingMode.CLOSEST;
+    private int roundRobinIndex = 0;
+    @Nullable
+    private DestinationIndex destinationIndex;
+    @Nullable
+    private Level level;
+
+    /**
+     * Number of selected paths.
+     */
+    private int size = 0;
+    /**
+     * Indices of the selected paths, or null if all paths are selected.
+     */
+    @Nullable
+    private int[] candidates = null;
+    private int[] candidateBuffer = new int[0];
+    private int startPosition = 0;
+    private int[] permutation = new int[0];
+    /*
+     * Balanced order: in-flight items for each selected position, heap of the selected positions that were not returned yet,
+     * and selected positions in the order they were popped.
+     */
+    private int[] loads = new int[0];
+    private int[] heap = new int[0];
+    private int heapSize = 0;
+    private int[] balancedOrder = new int[0];
+    private int balancedCount = 0;
+    /**
+     * True if the heap can be reused by the next selection, which is the case if it selects the paths of {@link #heapItem},
+     * or all paths if it is null.
+     */
+    private boolean heapReusable = false;
+    @Nullable
+    private Item heapItem;
+
+    /**
+     * @param roundRobinIndex Index of the first path for {@link RoutingMode#ROUND_ROBIN}. Ignored for other modes.
+     */
+    void reset(List<ItemPath> paths, @Nullable DestinationIndex destinationIndex, RoutingMode mode, int roundRobinIndex,
+            Level level) {
+        this.paths = paths;
+        this.destinationIndex = destinationIndex;
+        this.mode = paths.size() <= 1 ? RoutingMode.CLOSEST : mode;
+        this.roundRobinIndex = this.mode == RoutingMode.ROUND_ROBIN ? roundRobinIndex : 0;
+        this.level = level;
+        // The loads might have changed since the previous operation.
+        this.heapReusable = false;
+        selectAll();
+    }
+
+    void reset(List<ItemPath> paths) {
+        this.paths = paths;
+        this.destinationIndex = null;
+        this.mode = RoutingMode.CLOSEST;
+        this.roundRobinIndex = 0;
+        this.level = null;
+        this.heapReusable = false;
+        selectAll();
+    }
+
+    /**
+     * Restrict the order to the paths that might accept the variant. Does nothing if there is no destination index.
+     */
+    void select(ItemVariant variant) {
+        if (mode == RoutingMode.BALANCED && heapReusable && (destinationIndex == null || heapItem == variant.getItem())) {
+            restoreHeap();
+            return;
+        }
+        if (destinationIndex == null) {
+            return;
+        }
+        heapItem = variant.getItem();
+
+        var openPaths = destinationIndex.getOpenPaths();
+        var itemPaths = destinationIndex.getPaths(variant.getItem());
+        if (itemPaths.isEmpty()) {
+            select(openPaths);
+        } else if (openPaths.isEmpty()) {
+            select(itemPaths);
+        } else {
+            // Merge both sorted lists.
+            int total = openPaths.size() + itemPaths.size();
+            if (candidateBuffer.length < total) {
+                candidateBuffer = new int[total];
+            }
+            int i = 0, j = 0, k = 0;
+            while (i < openPaths.size() || j < itemPaths.size()) {
+                if (j == itemPaths.size() || i < openPaths.size() && openPaths.getInt(i) < itemPaths.getInt(j)) {
+                    candidateBuffer[k++] = openPaths.getInt(i++);
+                } else {
+                    candidateBuffer[k++] = itemPaths.getInt(j++);
+                }
+            }
+            candidates = candidateBuffer;
+            onSelected(k);
+        }
+    }
+
+    private void select(IntArrayList indices) {
+        candidates = indices.elements();
+        onSelected(indices.size());
+    }
+
+    private void selectAll() {
+        candidates = null;
+        heapItem = null;
+        onSelected(paths.size());
+    }
+
+    private void onSelected(int size) {
+        this.size = size;
+
+        startPosition = 0;
+        if (mode == RoutingMode.ROUND_ROBIN && candidates != null) {
+            // Start from the first candidate at or after the round-robin index.
+            while (startPosition < size && candidates[startPosition] < roundRobinIndex) {
+                startPosition++;
+            }
+            if (startPosition == size) {
+                startPosition = 0;
+            }
+        } else if (mode == RoutingMode.ROUND_ROBIN) {
+            startPosition = roundRobinIndex;
+        }
+
+        if (mode == RoutingMode.RANDOM) {
+            if (permutation.length < size) {
+                permutation = new int[size];
+            }
+            for (int i = 0; i < size; ++i) {
+                permutation[i] = i;
+            }
+            for (int i = size - 1; i > 0; --i) {
+                int j = level.random.nextInt(i + 1);
+                int tmp = permutation[i];
+                permutation[i] = permutation[j];
+                permutation[j] = tmp;
+            }
+        }
+
+        if (mode == RoutingMode.BALANCED) {
+            if (loads.length < size) {
+                loads = new int[size];
+                heap = new int[size];
+                balancedOrder = new int[size];
+            }
+            for (int i = 0; i < size; ++i) {
+                var path = paths.get(candidates == null ? i : candidates[i]);
+                loads[i] = path.getInsertionTarget(level).getInFlightItems();
+                heap[i] = i;
+            }
+            heapSize = size;
+            balancedCount = 0;
+            for (int i = size / 2 - 1; i >= 0; --i) {
+                siftDown(i);
+            }
+            heapReusable = true;
+        }
+    }
+
+    /**
+     * Push the popped positions back into the heap, with their current load.
+     */
+    private void restoreHeap() {
+        for (int i = 0; i < balancedCount; ++i) {
+            int position = balancedOrder[i];
+            loads[position] = paths.get(candidates == null ? position : candidates[position]).getInsertionTarget(level).getInFlightItems();
+            heap[heapSize] = position;
+            siftUp(heapSize++);
+        }
+        balancedCount = 0;
+    }
+
+    /**
+     * Return true if selected position {@code a} should be tried before {@code b}: less loaded first, then closest first.
+     */
+    private boolean isBefore(int a, int b) {
+        return loads[a] < loads[b] || loads[a] == loads[b] && a < b;
+    }
+
+    private void siftDown(int i) {
+        int value = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && isBefore(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!isBefore(heap[child], value)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+    }
+
+    private void siftUp(int i) {
+        int value = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!isBefore(value, heap[parent])) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+    }
+
+    private int balancedPosition(int position) {
+        while (balancedCount <= position) {
+            balancedOrder[balancedCount++] = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(0);
+        }
+        return balancedOrder[position];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Return the full path list, that {@link #pathIndex} refers to.
+     */
+    List<ItemPath> getPaths() {
+        return paths;
+    }
+
+    /**
+     * Return the index in the path list of the {@code position}-th path to try.
+     */
+    int pathIndex(int position) {
+        int selectedPosition = switch (mode) {
+        case CLOSEST -> position;
+        case FURTHEST -> size - 1 - position;
+        case RANDOM -> permutation[position];
+        case BALANCED -> balancedPosition(position);
+        case ROUND_ROBIN -> {
+            int index = startPosition + position;
+            yield index >= size ? index - size : index;
+        }
+        };
+        return candidates == null ? selectedPosition : candidates[selectedPosition];
+    }
+
+    ItemPath get(int position) {
+        return paths.get(pathIndex(position));
+    }
+
+    /**
+     * Return by how much the round-robin index should advance after the paths up to {@code positionCount} were tried,
+     * counting the paths that were skipped because they were not selected.
+     */
+    int getRoundRobinAdvance(int positionCount) {
+        if (candidates == null || mode != RoutingMode.ROUND_ROBIN || positionCount == 0) {
+            return positionCount;
+        }
+        if (positionCount >= size) {
+            return paths.size();
+        }
+        int lastIndex = pathIndex(positionCount - 1);
+        return Math.floorMod(lastIndex - roundRobinIndex, paths.size()) + 1;
+    }
+}
@@ -19,22 +19,34 @@
 package dev.technici4n.moderndynamics.network.item;
 
 import com.google.common.base.Preconditions;
+import dev.technici4n.moderndynamics.network.TickHelper;
 import dev.technici4n.moderndynamics.util.ItemVariant;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Supplier;
 import net.minecraft.CrashReport;
 import net.minecraft.CrashReportCategory;
 import net.minecraft.ReportedException;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.neoforged.neoforge.items.IItemHandler;
+import net.neoforged.neoforge.items.ItemHandlerHelper;
 import org.jetbrains.annotations.Nullable;
 
 // TODO: needs to support recursive queries if filters are being used.
 public class SimulatedInsertionTarget {
+    /**
+     * Interval after which the slot index is rebuilt even if no stale entry was observed.
+     */
+    private static final int REINDEX_INTERVAL = 20;
+
     private final SimulatedInsertionTargets.Coord coord; // used for crash report info
     private final Supplier<@Nullable IItemHandler> storageFinder;
     /**
@@ -46,6 +58,46 @@ public class SimulatedInsertionTarget {
      * for each slot.
      */
     private final List<ItemStack> awaitedStacks = new ArrayList<>();
+    /**
+     * Total amount of items in {@link #pendingStacks} and {@link #awaitedStacks}.
+     * The target is never evicted while items are traveling towards it.
+     */
+    private int inFlightItems = 0;
+    /**
+     * Total amount of items in the target storage. Counted when the slot index is rebuilt,
+     * and kept up to date in between with the deliveries and extractions of the pipes.
+     */
+    private int storedItems = 0;
+    /**
+     * First slot that was planned by the last insertion, or -1 if none was.
+     */
+    private int lastPlannedSlot = -1;
+    long lastAccessTick;
+    boolean evicted = false;
+    /*
+     * Slot index of the target storage, see ensureIndex.
+     */
+    @Nullable
+    private IItemHandler indexedStorage = null;
+    private long lastIndexTick = Long.MIN_VALUE;
+    private boolean indexDirty = false;
+    /**
+     * Slots that contain an item, or that await an item, indexed by item.
+     */
+    private final Map<Item, IntArrayList> slotsByItem = new IdentityHashMap<>();
+    /**
+     * Slots that are empty and don't await anything.
+     */
+    private final BitSet freeSlots = new BitSet();
+    private int[] slotLimits = new int[0];
+    /*
+     * Stack passed to the simulated insertions, reused as long as the variant stays the same so that tagged variants
+     * don't copy their tag for every slot. Insertions must not modify the stack they are passed, only its count is updated.
+     */
+    private ItemStack simulationStack = ItemStack.EMPTY;
+    @Nullable
+    private ItemVariant simulationVariant;
+    private boolean simulationStackInUse = false;
 
     public SimulatedInsertionTarget(SimulatedInsertionTargets.Coord coord, Supplier<@Nullable IItemHandler> storageFinder) {
         this.coord = coord;
@@ -56,9 +108,64 @@ public class SimulatedInsertionTarget {
         return storageFinder.get() != null;
     }
 
-    public int insert(ItemVariant variant, int maxAmount, boolean simulate, StartTravelCallback callback) {
+    /**
+     * Return the cached target storage, or {@code null} if there is none.
+     */
+    @Nullable
+    public IItemHandler getStorage() {
+        return storageFinder.get();
+    }
+
+    /**
+     * Return true if this target was evicted from {@link SimulatedInsertionTargets}, in which case it should be looked up again.
+     */
+    public boolean isEvicted() {
+        return evicted;
+    }
+
+    /**
+     * Return how many more items can be sent to this target before it holds {@code maxItems} items,
+     * also counting the items that are traveling towards it if {@code countInFlight} is true.
+     */
+    public int getRemainingCapacity(int maxItems, boolean countInFlight) {
+        var targetStorage = storageFinder.get();
+        if (targetStorage == null) {
+            return 0;
+        }
+        ensureIndex(targetStorage);
+
+        long total = (long) storedItems + (countInFlight ? inFlightItems : 0);
+        return (int) Math.max(0, maxItems - total);
+    }
+
+    /**
+     * Account for items that a pipe inserted into the target storage.
+     */
+    public void onDelivered(int amount) {
+        storedItems += amount;
+    }
+
+    /**
+     * Account for items that a pipe extracted from the target storage.
+     */
+    public void onExtracted(int amount) {
+        storedItems = Math.max(0, storedItems - amount);
+    }
+
+    /**
+     * Return the amount of items that are currently traveling towards this target.
+     */
+    public int getInFlightItems() {
+        return inFlightItems;
+    }
+
+    boolean isIdle(long accessedBeforeTick) {
+        return inFlightItems == 0 && lastAccessTick < accessedBeforeTick;
+    }
+
+    public int insert(ItemVariant variant, int maxAmount, boolean simulate) {
         try {
-            return innerInsert(variant, maxAmount, simulate, callback);
+            return innerInsert(variant, maxAmount, simulate);
         } catch (Throwable t) {
             var report = CrashReport.forThrowable(t, "Item pipe simulated insertion failed");
 
@@ -74,7 +181,7 @@ public class SimulatedInsertionTarget {
         }
     }
 
-    private int innerInsert(ItemVariant variant, int maxAmount, boolean simulate, StartTravelCallback callback) {
+    private int innerInsert(ItemVariant variant, int maxAmount, boolean simulate) {
         Preconditions.checkArgument(!variant.isBlank(), "blank variant");
         Preconditions.checkArgument(maxAmount >= 0, "non-negative amount");
         var targetStorage = storageFinder.get();
@@ -83,6 +190,22 @@ public class SimulatedInsertionTarget {
         }
 
         // Try to plan for pending stacks to begin with...
+        if (!pendingStacks.isEmpty()) {
+            planPendingStacks(targetStorage);
+        }
+
+        // Plan for this additional stack
+        lastPlannedSlot = -1;
+        int inserted = planForStack(targetStorage, variant, maxAmount, simulate);
+
+        if (!simulate && inserted > 0) {
+            inFlightItems += inserted;
+        }
+
+        return inserted;
+    }
+
+    private void planPendingStacks(IItemHandler targetStorage) {
         var pendingIterator = pendingStacks.object2IntEntrySet().iterator();
         while (pendingIterator.hasNext()) {
             var entry = pendingIterator.next();
@@ -94,81 +217,218 @@ public class SimulatedInsertionTarget {
                 entry.setValue(entry.getIntValue() - planned);
             }
         }
+    }
 
-        // Plan for this additional stack
-        int inserted = planForStack(targetStorage, variant, maxAmount, simulate);
+    /**
+     * Try to plan for some stack to be inserted, return how much is anticipated to be insertable.
+     * Slots that already contain or await the same item are tried first, then free slots.
+     */
+    private int planForStack(IItemHandler targetStorage, ItemVariant variant, int maxAmount, boolean simulate) {
+        ensureIndex(targetStorage);
 
-        if (!simulate && inserted > 0) {
-            callback.startTravel(variant, inserted);
+        int remaining = maxAmount;
+
+        var candidateSlots = slotsByItem.get(variant.getItem());
+        if (candidateSlots != null) {
+            for (int i = 0; i < candidateSlots.size() && remaining > 0; ++i) {
+                remaining -= planForSlot(targetStorage, candidateSlots.getInt(i), variant, remaining, simulate);
+            }
+        }
+
+        for (int slot = freeSlots.nextSetBit(0); slot >= 0 && remaining > 0; slot = freeSlots.nextSetBit(slot + 1)) {
+            int planned = planForSlot(targetStorage, slot, variant, remaining, simulate);
+
+            if (planned > 0 && !simulate) {
+                freeSlots.clear(slot);
+                slotsByItem.computeIfAbsent(variant.getItem(), item -> new IntArrayList()).add(slot);
+            }
+
+            remaining -= planned;
+        }
+
+        return maxAmount - remaining;
+    }
+
+    /**
+     * Try to plan for some stack to be inserted into a single slot, return how much is anticipated to be insertable.
+     */
+    private int planForSlot(IItemHandler targetStorage, int slot, ItemVariant variant, int maxAmount, boolean simulate) {
+        var awaited = awaitedStacks.get(slot);
+        if (!awaited.isEmpty() && !variant.matches(awaited)) {
+            return 0;
+        }
+
+        var current = targetStorage.getStackInSlot(slot);
+        if (!current.isEmpty()) {
+            if (current.getItem() != variant.getItem() && awaited.isEmpty()) {
+                // The index is out of date: the slot was expected to be free or to contain the item.
+                indexDirty = true;
+                return 0;
+            }
+            if (!variant.matches(current)) {
+                return 0;
+            }
+        }
+
+        // Skip the simulation if the slot is already full.
+        if (current.getCount() + awaited.getCount() >= slotLimits[slot]) {
+            return 0;
+        }
+
+        int insertCount = awaited.getCount() + maxAmount;
+        int inserted = insertCount - simulateInsertion(targetStorage, slot, variant, insertCount) - awaited.getCount();
+
+        if (inserted <= 0) {
+            return 0;
+        }
+
+        if (!simulate) {
+            if (lastPlannedSlot == -1) {
+                lastPlannedSlot = slot;
+            }
+            if (awaited.isEmpty()) {
+                awaitedStacks.set(slot, variant.toStack(inserted));
+            } else {
+                awaited.grow(inserted);
+            }
         }
 
         return inserted;
     }
 
     /**
-     * Try to plan for some stack to be inserted, return how much is anticipated to be insertable.
+     * Simulate the insertion of some items into a slot, and return how many would not be inserted.
      */
-    private int planForStack(IItemHandler targetStorage, ItemVariant variant, int maxAmount, boolean simulate) {
+    private int simulateInsertion(IItemHandler targetStorage, int slot, ItemVariant variant, int count) {
+        if (simulationStackInUse) {
+            // The storage inserts back into this target, for example through another pipe network: don't share the stack.
+            return targetStorage.insertItem(slot, variant.toStack(count), true).getCount();
+        }
+
+        if (simulationVariant != variant) {
+            simulationVariant = variant;
+            simulationStack = variant.toStack(count);
+        } else {
+            simulationStack.setCount(count);
+        }
+
+        simulationStackInUse = true;
+        try {
+            return targetStorage.insertItem(slot, simulationStack, true).getCount();
+        } finally {
+            simulationStackInUse = false;
+        }
+    }
+
+    /**
+     * Rebuild the slot index if it might be out of date.
+     * The index is rebuilt when the storage or its slot count changes, when a stale entry was observed during planning
+     * (at most once per tick), and periodically to pick up changes that planning does not observe.
+     */
+    private void ensureIndex(IItemHandler targetStorage) {
+        int slots = targetStorage.getSlots();
+        long currentTick = TickHelper.getTickCounter();
+
+        if (targetStorage == indexedStorage && slots == slotLimits.length
+                && currentTick - lastIndexTick < REINDEX_INTERVAL
+                && (!indexDirty || currentTick == lastIndexTick)) {
+            return;
+        }
+
+        indexedStorage = targetStorage;
+        lastIndexTick = currentTick;
+        indexDirty = false;
+
         // Extend pending list if necessary
-        int targetSlots = targetStorage.getSlots();
-        while (awaitedStacks.size() < targetSlots) {
+        while (awaitedStacks.size() < slots) {
             awaitedStacks.add(ItemStack.EMPTY);
         }
 
-        // Used to limit stack allocations
-        ItemStack leftover = null;
+        if (slotLimits.length != slots) {
+            slotLimits = new int[slots];
+        }
+        slotsByItem.clear();
+        freeSlots.clear();
+        storedItems = 0;
 
-        for (int i = 0; i < targetSlots; ++i) {
-            var pending = awaitedStacks.get(i);
+        for (int slot = 0; slot < slots; ++slot) {
+            slotLimits[slot] = targetStorage.getSlotLimit(slot);
 
-            if (pending.isEmpty()) {
-                // No pending stack, try to insert as much as we can.
-                if (leftover == null) {
-                    leftover = variant.toStack(maxAmount);
-                }
+            var current = targetStorage.getStackInSlot(slot);
+            var awaited = awaitedStacks.get(slot);
 
-                int toInsert = leftover.getCount();
-                leftover = targetStorage.insertItem(i, leftover, true);
-                int inserted = toInsert - leftover.getCount();
+            if (!current.isEmpty()) {
+                storedItems += current.getCount();
+                slotsByItem.computeIfAbsent(current.getItem(), item -> new IntArrayList()).add(slot);
+            } else if (!awaited.isEmpty()) {
+                slotsByItem.computeIfAbsent(awaited.getItem(), item -> new IntArrayList()).add(slot);
+            } else {
+                freeSlots.set(slot);
+            }
+        }
+    }
 
-                if (inserted > 0 && !simulate) {
-                    awaitedStacks.set(i, variant.toStack(inserted));
-                }
-            } else if (variant.matches(pending)) {
-                // Pending stack, try to insert more than what is scheduled.
-                if (leftover == null) {
-                    leftover = variant.toStack(maxAmount);
-                }
+    /**
+     * Return the first slot that the last non-simulated {@link #insert} planned for, or -1 if the items are not planned yet.
+     */
+    public int getLastPlannedSlot() {
+        return lastPlannedSlot;
+    }
+
+    /**
+     * Insert arriving items into the slot that was planned for them, if it still awaits the variant.
+     * This avoids any slot search in the common case.
+     *
+     * @return The amount that was inserted.
+     */
+    public int deliverToSlot(IItemHandler storage, int slot, ItemVariant variant, int amount) {
+        if (slot < 0 || slot >= awaitedStacks.size() || slot >= storage.getSlots() || !variant.matches(awaitedStacks.get(slot))) {
+            return 0;
+        }
+        return amount - storage.insertItem(slot, variant.toStack(amount), false).getCount();
+    }
 
-                int insertCount = pending.getCount() + leftover.getCount();
-                int inserted = insertCount - targetStorage.insertItem(i, variant.toStack(insertCount), true).getCount();
+    /**
+     * Insert arriving items into the target storage: into the indexed slots that await the variant first, then into any slot.
+     * The items must still be awaited, that is {@link #stopAwaiting} must be called after this.
+     *
+     * @return The amount that was inserted.
+     */
+    public int deliver(IItemHandler storage, ItemVariant variant, int amount) {
+        int remaining = amount;
 
-                int delta = inserted - pending.getCount();
-                if (delta > 0) {
-                    leftover.shrink(delta);
-                    if (!simulate) {
-                        pending.grow(delta);
-                    }
+        // Slots that await the variant are always indexed under its item, unless they contain another item.
+        var candidateSlots = slotsByItem.get(variant.getItem());
+        if (candidateSlots != null) {
+            int slots = Math.min(storage.getSlots(), awaitedStacks.size());
+            for (int i = 0; i < candidateSlots.size() && remaining > 0; ++i) {
+                int slot = candidateSlots.getInt(i);
+                if (slot < slots && variant.matches(awaitedStacks.get(slot))) {
+                    // The handler might keep the stack, so it can't be shared.
+                    remaining = storage.insertItem(slot, variant.toStack(remaining), false).getCount();
                 }
             }
+        }
 
-            if (leftover != null && leftover.isEmpty()) {
-                break;
-            }
+        if (remaining > 0) {
+            remaining = ItemHandlerHelper.insertItemStacked(storage, variant.toStack(remaining), false).getCount();
         }
 
-        return leftover == null ? 0 : maxAmount - leftover.getCount();
+        return amount - remaining;
     }
 
     public void startAwaiting(ItemVariant variant, int amount) {
         pendingStacks.mergeInt(variant, amount, Integer::sum);
+        inFlightItems += amount;
     }
 
     public void stopAwaiting(ItemVariant variant, int amount) {
+        int initialAmount = amount;
+
         // Remove from pending stacks first
         int pending = pendingStacks.getInt(variant);
         if (pending > 0) {
-            if (pending >= amount) {
+            if (pending > amount) {
                 pendingStacks.put(variant, pending - amount);
                 amount = 0;
             } else {
@@ -197,5 +457,7 @@ public class SimulatedInsertionTarget {
                 }
             }
         }
+
+        inFlightItems -= initialAmount - amount;
     }
 }
@@ -18,7 +18,9 @@
  */
 package dev.technici4n.moderndynamics.network.item;
 
-import java.util.HashMap;
+import dev.technici4n.moderndynamics.network.TickHelper;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
@@ -26,22 +28,135 @@ import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.level.Level;
 import net.neoforged.neoforge.capabilities.BlockCapabilityCache;
 import net.neoforged.neoforge.capabilities.Capabilities;
+import org.jetbrains.annotations.Nullable;
 
+/**
+ * The simulated insertion targets, per level.
+ * Targets are kept alive by the items traveling towards them, and by the paths that keep accessing them.
+ * Targets that have neither are evicted.
+ */
 public class SimulatedInsertionTargets {
-    private static final Map<Coord, SimulatedInsertionTarget> TARGETS = new HashMap<>();
+    /**
+     * How long a target without in-flight items can go without being accessed before it is evicted.
+     */
+    private static final int IDLE_TICKS_BEFORE_EVICTION = 200;
+    private static final int EVICTION_INTERVAL = 100;
+
+    private static final Map<ServerLevel, LevelTargets> LEVELS = new IdentityHashMap<>();
 
     record Coord(ServerLevel world, BlockPos pos, Direction direction) {
     }
 
     public static SimulatedInsertionTarget getTarget(Level w, BlockPos pos, Direction side) {
         ServerLevel world = (ServerLevel) w;
-        return TARGETS.computeIfAbsent(new Coord(world, pos, side), coord -> {
-            var cache = BlockCapabilityCache.create(Capabilities.ItemHandler.BLOCK, world, pos, side);
-            return new SimulatedInsertionTarget(coord, cache::getCapability);
-        });
+        var sideTargets = LEVELS.computeIfAbsent(world, l -> new LevelTargets()).bySide[side.get3DDataValue()];
+        var target = sideTargets.get(pos.asLong());
+
+        if (target == null) {
+            var immutablePos = pos.immutable();
+            var cache = BlockCapabilityCache.create(Capabilities.ItemHandler.BLOCK, world, immutablePos, side);
+            target = new SimulatedInsertionTarget(new Coord(world, immutablePos, side), cache::getCapability);
+            sideTargets.put(pos.asLong(), target);
+        }
+
+        target.lastAccessTick = TickHelper.getTickCounter();
+        return target;
+    }
+
+    /**
+     * Return the target for the given position and side if it exists, without creating it or counting as an access.
+     */
+    @Nullable
+    public static SimulatedInsertionTarget getExistingTarget(Level w, BlockPos pos, Direction side) {
+        var levelTargets = LEVELS.get((ServerLevel) w);
+        return levelTargets == null ? null : levelTargets.bySide[side.get3DDataValue()].get(pos.asLong());
+    }
+
+    /**
+     * Periodically evict the idle targets of a level.
+     */
+    public static void onLevelTick(ServerLevel level) {
+        var levelTargets = LEVELS.get(level);
+        if (levelTargets == null) {
+            return;
+        }
+
+        long currentTick = TickHelper.getTickCounter();
+        if (currentTick - levelTargets.lastEvictionTick < EVICTION_INTERVAL) {
+            return;
+        }
+        levelTargets.lastEvictionTick = currentTick;
+
+        for (var sideTargets : levelTargets.bySide) {
+            for (var it = sideTargets.values().iterator(); it.hasNext();) {
+                var target = it.next();
+
+                if (target.isIdle(currentTick - IDLE_TICKS_BEFORE_EVICTION)) {
+                    target.evicted = true;
+                    it.remove();
+                }
+            }
+        }
+
+        if (levelTargets.isEmpty()) {
+            LEVELS.remove(level);
+        }
+    }
+
+    public static void onLevelUnloaded(ServerLevel level) {
+        var levelTargets = LEVELS.remove(level);
+        if (levelTargets != null) {
+            levelTargets.evictAll();
+        }
     }
 
     public static void clear() {
-        TARGETS.clear();
+        for (var levelTargets : LEVELS.values()) {
+            levelTargets.evictAll();
+        }
+        LEVELS.clear();
+    }
+
+    /**
+     * Return the number of live targets in a level.
+     */
+    public static int getTargetCount(ServerLevel level) {
+        var levelTargets = LEVELS.get(level);
+        return levelTargets == null ? 0 : levelTargets.size();
+    }
+
+    private static class LevelTargets {
+        @SuppressWarnings("unchecked")
+        final Long2ObjectOpenHashMap<SimulatedInsertionTarget>[] bySide = new Long2ObjectOpenHashMap[6];
+        long lastEvictionTick = TickHelper.getTickCounter();
+
+        LevelTargets() {
+            for (int i = 0; i < bySide.length; ++i) {
+                bySide[i] = new Long2ObjectOpenHashMap<>();
+            }
+        }
+
+        int size() {
+            int size = 0;
+            for (var sideTargets : bySide) {
+                size += sideTargets.size();
+            }
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size() == 0;
+        }
+
+        /**
+         * Mark all targets as evicted, since paths might still reference them.
+         */
+        void evictAll() {
+            for (var sideTargets : bySide) {
+                for (var target : sideTargets.values()) {
+                    target.evicted = true;
+                }
+            }
+        }
     }
 }
@@ -34,6 +34,11 @@ public class TravelingItem {
     public final FailedInsertStrategy strategy;
     public final double speedMultiplier;
     public double traveledDistance;
+    /**
+     * Slot of the target storage that was planned for this item, or -1 if unknown.
+     * Not saved: the items are planned again when they are loaded.
+     */
+    public int targetSlot = -1;
 
     public TravelingItem(ItemVariant variant, int amount, ItemPath path, FailedInsertStrategy strategy, double speedMultiplier,
             double traveledDistance) {
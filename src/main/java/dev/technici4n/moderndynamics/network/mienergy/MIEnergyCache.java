@@ -27,8 +27,8 @@ import net.minecraft.server.level.ServerLevel;
 import net.neoforged.neoforge.energy.IEnergyStorage;
 
 public class MIEnergyCache extends NetworkCache<MIEnergyHost, MIEnergyCache> {
-    private int energy = 0;
-    private int maxEnergy = 0;
+    private long energy = 0;
+    private long maxEnergy = 0;
 
     protected MIEnergyCache(ServerLevel level, List<NetworkNode<MIEnergyHost, MIEnergyCache>> networkNodes) {
         super(level, networkNodes);
@@ -39,6 +39,10 @@ public class MIEnergyCache extends NetworkCache<MIEnergyHost, MIEnergyCache> {
         energy = maxEnergy = 0;
 
         for (var node : nodes) {
+            if (node.isDormant()) {
+                continue;
+            }
+
             energy += node.getHost().getEnergy();
             maxEnergy += node.getHost().getMaxEnergy();
         }
@@ -46,9 +50,13 @@ public class MIEnergyCache extends NetworkCache<MIEnergyHost, MIEnergyCache> {
 
     @Override
     protected void doSeparate() {
-        int remainingNodes = nodes.size();
+        int remainingNodes = getLoadedNodeCount();
 
         for (var node : nodes) {
+            if (node.isDormant()) {
+                continue;
+            }
+
             var host = node.getHost();
 
             long nodeEnergy = Math.min(host.getMaxEnergy(), energy / remainingNodes);
@@ -67,12 +75,12 @@ public class MIEnergyCache extends NetworkCache<MIEnergyHost, MIEnergyCache> {
         List<IEnergyStorage> storages = new ArrayList<>();
 
         for (var node : nodes) {
-            if (node.getHost().isTicking()) {
+            if (node.isTicking()) {
                 node.getHost().gatherCapabilities(storages);
             }
         }
 
-        var tier = nodes.get(0).getHost().tier;
+        var tier = getFirstLoadedHost().tier;
 
         // Extract
         energy += EnergyCache.transferForTargets(IEnergyStorage::extractEnergy, storages, Math.min(maxEnergy - energy, tier.getMax()));
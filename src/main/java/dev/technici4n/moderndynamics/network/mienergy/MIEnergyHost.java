@@ -64,8 +64,7 @@ public class MIEnergyHost extends NodeHost {
         for (int i = 0; i < 6; ++i) {
             if ((inventoryConnections & (1 << i)) > 0 && (pipeConnections & (1 << i)) == 0) {
                 Direction dir = Direction.from3DDataValue(i);
-                IEnergyStorage adjacentCap = pipe.getLevel().getCapability(MIProxy.INSTANCE.getLookup(), pipe.getBlockPos().relative(dir),
-                        dir.getOpposite());
+                IEnergyStorage adjacentCap = getAdjacentCapability(MIProxy.INSTANCE.getLookup(), dir);
 
                 if (adjacentCap != null && MIProxy.INSTANCE.canConnect(adjacentCap, tier)) {
                     if (out != null) {
@@ -132,8 +132,21 @@ public class PipeBlock extends MdBlock implements EntityBlock, SimpleWaterlogged
     @SuppressWarnings("deprecation")
     @Override
     public void neighborChanged(BlockState state, Level world, BlockPos pos, Block param4, BlockPos param5, boolean param6) {
-        if (world.getBlockEntity(pos) instanceof PipeBlockEntity pipe) {
-            pipe.scheduleHostUpdates();
+        if (!world.isClientSide() && world.getBlockEntity(pos) instanceof PipeBlockEntity pipe) {
+            for (var side : Direction.values()) {
+                if (pos.relative(side).equals(param5)) {
+                    pipe.onAdjacentBlockChanged(side);
+                }
+            }
+            pipe.onNeighborChanged();
+        }
+    }
+
+    @Override
+    public void onNeighborChange(BlockState state, LevelReader level, BlockPos pos, BlockPos neighbor) {
+        // Called when the contents of an adjacent inventory change.
+        if (!level.isClientSide() && level.getBlockEntity(pos) instanceof PipeBlockEntity pipe) {
+            pipe.onNeighborChanged();
         }
     }
 
@@ -63,6 +63,10 @@ public abstract class PipeBlockEntity extends MdBlockEntity {
 
     private NodeHost[] hosts;
     private boolean hostsRegistered = false;
+    /**
+     * Set when the pipe is removed because its chunk is unloaded, in which case the nodes are kept as dormant nodes.
+     */
+    private boolean chunkUnloading = false;
     public int connectionBlacklist = 0;
     private VoxelShape cachedShape = PipeBoundingBoxes.CORE_SHAPE;
     /* client side stuff */
@@ -205,6 +209,7 @@ public abstract class PipeBlockEntity extends MdBlockEntity {
     @Override
     public void clearRemoved() {
         super.clearRemoved();
+        chunkUnloading = false;
 
         if (!level.isClientSide()) {
             if (!hostsRegistered) {
@@ -230,12 +235,22 @@ public abstract class PipeBlockEntity extends MdBlockEntity {
                 hostsRegistered = false;
 
                 for (NodeHost host : getHosts()) {
-                    host.removeSelf();
+                    if (chunkUnloading) {
+                        host.unloadSelf();
+                    } else {
+                        host.removeSelf();
+                    }
                 }
             }
         }
     }
 
+    @Override
+    public void onChunkUnloaded() {
+        super.onChunkUnloaded();
+        chunkUnloading = true;
+    }
+
     public void refreshHosts() {
         if (hostsRegistered) {
             for (NodeHost host : getHosts()) {
@@ -474,6 +489,20 @@ public abstract class PipeBlockEntity extends MdBlockEntity {
         }
     }
 
+    public void onNeighborChanged() {
+        for (var host : getHosts()) {
+            host.onNeighborChanged();
+        }
+    }
+
+    public void onAdjacentBlockChanged(Direction side) {
+        if (hostsRegistered) {
+            for (var host : getHosts()) {
+                host.onAdjacentBlockChanged(side);
+            }
+        }
+    }
+
     public int getClientSideConnections() {
         Preconditions.checkState(isClientSide());
         return clientSideConnections;
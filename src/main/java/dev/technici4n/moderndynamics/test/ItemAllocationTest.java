@@ -0,0 +1,113 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.test;
+
+import dev.technici4n.moderndynamics.init.MdBlocks;
+import dev.technici4n.moderndynamics.init.MdItems;
+import dev.technici4n.moderndynamics.test.framework.MdGameTestHelper;
+import java.lang.management.ManagementFactory;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.ChestBlockEntity;
+
+public class ItemAllocationTest {
+    private static final int BASELINE_TICKS = 20;
+    private static final int STACKS = 4;
+    /**
+     * Allocations of the server thread per moved item, on top of the allocations of an idle tick.
+     * Generous since the rest of the server tick also allocates, but an allocation per slot or per path would exceed it.
+     */
+    private static final long MAX_BYTES_PER_ITEM = 4096;
+
+    /**
+     * Move items between two chests: extraction, travel in the pipes and delivery.
+     */
+    @MdGameTest(timeoutTicks = 400)
+    public void testTransferAllocations(MdGameTestHelper helper) {
+        var sourceChest = new BlockPos(0, 1, 0);
+        helper.setBlock(sourceChest, Blocks.CHEST);
+        var targetChest = new BlockPos(4, 1, 0);
+        helper.setBlock(targetChest, Blocks.CHEST);
+
+        helper.pipe(new BlockPos(1, 1, 0), MdBlocks.ITEM_PIPE)
+                .attachment(Direction.WEST, MdItems.EXTRACTOR)
+                .configureItemIo(Direction.WEST, io -> {
+                    io.setUpgrade(0, new ItemStack(Items.HOPPER, 6));
+                    io.setUpgrade(1, new ItemStack(Items.REPEATER, 3));
+                });
+        helper.pipe(new BlockPos(2, 1, 0), MdBlocks.ITEM_PIPE);
+        helper.pipe(new BlockPos(3, 1, 0), MdBlocks.ITEM_PIPE);
+
+        int totalItems = STACKS * 64;
+        var measurement = new long[4];
+
+        helper.startSequence()
+                .thenIdle(5)
+                .thenExecute(() -> {
+                    measurement[0] = getAllocatedBytes();
+                    measurement[1] = helper.getTick();
+                })
+                .thenIdle(BASELINE_TICKS)
+                .thenExecute(() -> {
+                    long bytes = getAllocatedBytes();
+                    // Baseline: bytes per idle tick
+                    measurement[0] = (bytes - measurement[0]) / Math.max(1, helper.getTick() - measurement[1]);
+                    measurement[2] = bytes;
+                    measurement[3] = helper.getTick();
+
+                    var chest = (ChestBlockEntity) helper.getBlockEntity(sourceChest);
+                    for (int i = 0; i < STACKS; ++i) {
+                        chest.setItem(i, new ItemStack(Items.COBBLESTONE, 64));
+                    }
+                })
+                .thenWaitUntil(() -> {
+                    helper.assertContainerEmpty(sourceChest);
+                    helper.checkItem(targetChest, Items.COBBLESTONE, totalItems);
+                })
+                .thenExecute(() -> {
+                    long bytes = getAllocatedBytes();
+                    if (bytes < 0) {
+                        return; // Allocation counters are not available on this JVM.
+                    }
+                    long ticks = helper.getTick() - measurement[3];
+                    long transferBytes = bytes - measurement[2] - measurement[0] * ticks;
+                    long bytesPerItem = transferBytes / totalItems;
+
+                    if (bytesPerItem > MAX_BYTES_PER_ITEM) {
+                        helper.fail("Moving items allocated " + bytesPerItem + " bytes per item, expected at most " + MAX_BYTES_PER_ITEM,
+                                targetChest);
+                    }
+                })
+                .thenSucceed();
+    }
+
+    /**
+     * Return the bytes allocated by the current thread, or -1 if the JVM doesn't support it.
+     */
+    private static long getAllocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadBean
+                && threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled()) {
+            return threadBean.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+}
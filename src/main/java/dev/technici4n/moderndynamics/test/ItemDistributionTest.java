@@ -18,6 +18,7 @@
  */
 package dev.technici4n.moderndynamics.test;
 
+import dev.technici4n.moderndynamics.attachment.settings.OversendingMode;
 import dev.technici4n.moderndynamics.attachment.settings.RedstoneMode;
 import dev.technici4n.moderndynamics.attachment.settings.RoutingMode;
 import dev.technici4n.moderndynamics.init.MdBlocks;
@@ -71,4 +72,96 @@ public class ItemDistributionTest {
                 })
                 .thenSucceed();
     }
+
+    @MdGameTest(timeoutTicks = 400)
+    public void testBalancedSplit(MdGameTestHelper helper) {
+        var sourceChest = new BlockPos(0, 1, 0);
+        helper.setBlock(sourceChest, Blocks.CHEST);
+
+        // Two pipes per target, so that every item is still in flight when the last one is sent.
+        var targetChest1 = new BlockPos(3, 1, 0);
+        helper.setBlock(targetChest1, Blocks.CHEST);
+        var targetChest2 = new BlockPos(3, 1, 1);
+        helper.setBlock(targetChest2, Blocks.CHEST);
+        var targetChest3 = new BlockPos(3, 1, 2);
+        helper.setBlock(targetChest3, Blocks.CHEST);
+
+        helper.pipe(new BlockPos(1, 1, 0), MdBlocks.ITEM_PIPE)
+                .attachment(Direction.WEST, MdItems.EXTRACTOR)
+                .configureItemIo(Direction.WEST, io -> {
+                    io.setUpgrade(0, Items.COMPARATOR.getDefaultInstance());
+                    io.setUpgrade(1, new ItemStack(Items.REPEATER, 3));
+                    io.setMaxItemsExtracted(1);
+                    io.setRoutingMode(RoutingMode.BALANCED);
+                });
+        helper.pipe(new BlockPos(1, 1, 1), MdBlocks.ITEM_PIPE);
+        helper.pipe(new BlockPos(1, 1, 2), MdBlocks.ITEM_PIPE);
+        helper.pipe(new BlockPos(2, 1, 0), MdBlocks.ITEM_PIPE);
+        helper.pipe(new BlockPos(2, 1, 1), MdBlocks.ITEM_PIPE);
+        helper.pipe(new BlockPos(2, 1, 2), MdBlocks.ITEM_PIPE);
+
+        ((ChestBlockEntity) helper.getBlockEntity(sourceChest)).setItem(0, new ItemStack(Items.DIAMOND, 6));
+
+        // Closest routing would send everything to the first chest.
+        helper.startSequence()
+                .thenWaitUntil(() -> {
+                    helper.assertContainerEmpty(sourceChest);
+                    helper.checkItem(targetChest1, Items.DIAMOND, 2);
+                    helper.checkItem(targetChest2, Items.DIAMOND, 2);
+                    helper.checkItem(targetChest3, Items.DIAMOND, 2);
+                })
+                .thenSucceed();
+    }
+
+    @MdGameTest(timeoutTicks = 400)
+    public void testMaxItemsInInventoryCountsItemsInFlight(MdGameTestHelper helper) {
+        var sourceChest = new BlockPos(0, 1, 0);
+        var targetChest = new BlockPos(4, 1, 0);
+        buildCappedLine(helper, sourceChest, targetChest, OversendingMode.PREVENT_OVERSENDING);
+
+        // Many items are sent before the first one arrives, but only 4 may ever be on their way.
+        helper.startSequence()
+                .thenWaitUntil(() -> helper.checkItem(targetChest, Items.DIAMOND, 4))
+                .thenIdle(100)
+                .thenExecute(() -> {
+                    helper.checkItem(sourceChest, Items.DIAMOND, 12);
+                    helper.checkItem(targetChest, Items.DIAMOND, 4);
+                })
+                .thenSucceed();
+    }
+
+    @MdGameTest(timeoutTicks = 400)
+    public void testMaxItemsInInventoryAllowOversending(MdGameTestHelper helper) {
+        var sourceChest = new BlockPos(0, 1, 0);
+        var targetChest = new BlockPos(4, 1, 0);
+        buildCappedLine(helper, sourceChest, targetChest, OversendingMode.ALLOW_OVERSENDING);
+
+        // Only stored items count, so the items in flight overshoot the cap.
+        helper.startSequence()
+                .thenWaitUntil(() -> helper.checkItem(targetChest, Items.DIAMOND, 5))
+                .thenSucceed();
+    }
+
+    private static void buildCappedLine(MdGameTestHelper helper, BlockPos sourceChest, BlockPos targetChest,
+            OversendingMode oversendingMode) {
+        helper.setBlock(sourceChest, Blocks.CHEST);
+        helper.setBlock(targetChest, Blocks.CHEST);
+
+        helper.pipe(new BlockPos(1, 1, 0), MdBlocks.ITEM_PIPE)
+                .attachment(Direction.WEST, MdItems.EXTRACTOR)
+                .configureItemIo(Direction.WEST, io -> {
+                    io.setUpgrade(0, new ItemStack(Items.REPEATER, 3));
+                    io.setMaxItemsExtracted(1);
+                });
+        helper.pipe(new BlockPos(2, 1, 0), MdBlocks.ITEM_PIPE);
+        helper.pipe(new BlockPos(3, 1, 0), MdBlocks.ITEM_PIPE)
+                .attachment(Direction.EAST, MdItems.FILTER)
+                .configureItemIo(Direction.EAST, io -> {
+                    io.setUpgrade(0, Items.COMPARATOR.getDefaultInstance());
+                    io.setMaxItemsInInventory(4);
+                    io.setOversendingMode(oversendingMode);
+                });
+
+        ((ChestBlockEntity) helper.getBlockEntity(sourceChest)).setItem(0, new ItemStack(Items.DIAMOND, 16));
+    }
 }
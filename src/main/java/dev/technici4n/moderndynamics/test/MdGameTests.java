@@ -31,7 +31,9 @@ import net.neoforged.neoforge.gametest.GameTestHolder;
 public class MdGameTests {
     private final List<Class<?>> testClasses = List.of(
             FluidTransferTest.class,
-            ItemDistributionTest.class);
+            ItemAllocationTest.class,
+            ItemDistributionTest.class,
+            NetworkUnloadTest.class);
 
     @GameTestGenerator
     public List<TestFunction> generateTests() {
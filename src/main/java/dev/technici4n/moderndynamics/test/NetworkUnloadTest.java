@@ -0,0 +1,96 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.test;
+
+import dev.technici4n.moderndynamics.init.MdBlocks;
+import dev.technici4n.moderndynamics.init.MdItems;
+import dev.technici4n.moderndynamics.network.NetworkNode;
+import dev.technici4n.moderndynamics.network.item.ItemHost;
+import dev.technici4n.moderndynamics.test.framework.MdGameTestHelper;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.ChestBlockEntity;
+
+public class NetworkUnloadTest {
+    /**
+     * Unload a pipe in the middle of a network like its chunk would, then load it back from its saved data.
+     * The dormant node must get the new host, and the network must keep moving items through it.
+     */
+    @MdGameTest(timeoutTicks = 300)
+    public void testDormantNodeRebinds(MdGameTestHelper helper) {
+        var sourceChest = new BlockPos(0, 1, 0);
+        helper.setBlock(sourceChest, Blocks.CHEST);
+        var targetChest = new BlockPos(4, 1, 0);
+        helper.setBlock(targetChest, Blocks.CHEST);
+
+        var middlePipe = new BlockPos(2, 1, 0);
+        helper.pipe(new BlockPos(1, 1, 0), MdBlocks.ITEM_PIPE)
+                .attachment(Direction.WEST, MdItems.EXTRACTOR);
+        helper.pipe(middlePipe, MdBlocks.ITEM_PIPE);
+        helper.pipe(new BlockPos(3, 1, 0), MdBlocks.ITEM_PIPE);
+
+        var level = helper.getLevel();
+        var middlePos = helper.absolutePos(middlePipe);
+        var unloadedNode = new NetworkNode<?, ?>[1];
+        var reloadedPipe = new BlockEntity[1];
+
+        helper.startSequence()
+                .thenWaitUntil(() -> {
+                    unloadedNode[0] = ItemHost.MANAGER.findNode(level, middlePos);
+                    if (unloadedNode[0] == null) {
+                        helper.fail("Pipe is not part of a network yet", middlePipe);
+                    }
+                })
+                .thenExecute(() -> {
+                    BlockEntity pipe = helper.getBlockEntity(middlePipe);
+                    var savedData = pipe.saveWithFullMetadata();
+                    pipe.onChunkUnloaded();
+                    pipe.setRemoved();
+
+                    if (ItemHost.MANAGER.findNode(level, middlePos) != null) {
+                        helper.fail("Unloaded node should be dormant", middlePipe);
+                    }
+
+                    // Loading the chunk again creates a new block entity from the saved data.
+                    reloadedPipe[0] = BlockEntity.loadStatic(middlePos, pipe.getBlockState(), savedData);
+                    level.setBlockEntity(reloadedPipe[0]);
+                })
+                .thenWaitUntil(() -> {
+                    var node = ItemHost.MANAGER.findNode(level, middlePos);
+                    if (node == null || node.getHost().getPipe() != reloadedPipe[0]) {
+                        helper.fail("Dormant node was not bound to the reloaded pipe", middlePipe);
+                    }
+                    if (node != unloadedNode[0] || node.getConnections().size() != 2) {
+                        helper.fail("Dormant node was rebuilt instead of reloaded", middlePipe);
+                    }
+                })
+                .thenExecute(() -> {
+                    ((ChestBlockEntity) helper.getBlockEntity(sourceChest)).setItem(0, new ItemStack(Items.DIAMOND, 4));
+                })
+                .thenWaitUntil(() -> {
+                    helper.assertContainerEmpty(sourceChest);
+                    helper.checkItem(targetChest, Items.DIAMOND, 4);
+                })
+                .thenSucceed();
+    }
+}
@@ -20,7 +20,9 @@ package dev.technici4n.moderndynamics.util;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import net.minecraft.ChatFormatting;
 import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.nbt.CompoundTag;
@@ -38,6 +40,11 @@ import org.slf4j.LoggerFactory;
 
 public final class FluidVariant {
     private static final Logger LOG = LoggerFactory.getLogger(FluidVariant.class);
+    /**
+     * Same canonicalization as {@link ItemVariant}: tagless variants per fluid, tagged variants interned weakly.
+     */
+    private static final Map<Fluid, FluidVariant> NO_TAG_VARIANTS = new ConcurrentHashMap<>();
+    private static final WeakInterner<FluidVariant> TAGGED_VARIANTS = new WeakInterner<>();
 
     private final Fluid fluid;
     private final @Nullable CompoundTag nbt;
@@ -45,7 +52,7 @@ public final class FluidVariant {
 
     private FluidVariant(Fluid fluid, @Nullable CompoundTag nbt) {
         this.fluid = fluid;
-        this.nbt = nbt != null ? nbt.copy() : null; // defensive copy
+        this.nbt = nbt;
         this.hashCode = Objects.hash(fluid, nbt);
     }
 
@@ -53,8 +60,13 @@ public final class FluidVariant {
         this(fluid, null);
     }
 
+    private static FluidVariant copyOf(FluidVariant probe) {
+        // defensive copy, the probe still references the caller's tag
+        return new FluidVariant(probe.fluid, probe.nbt != null ? probe.nbt.copy() : null);
+    }
+
     public static FluidVariant blank() {
-        return new FluidVariant(Fluids.EMPTY, null);
+        return of(Fluids.EMPTY, null);
     }
 
     public static FluidVariant of(Fluid fluid, @Nullable CompoundTag nbt) {
@@ -74,11 +86,13 @@ public final class FluidVariant {
         }
 
         if (nbt == null || fluid == Fluids.EMPTY) {
-            // Use the cached variant inside the fluid
-            return new FluidVariant(fluid, null); // TODO noTagCache.computeIfAbsent(fluid, f -> new FluidVariant(fluid, null));
+            var variant = NO_TAG_VARIANTS.get(fluid);
+            if (variant == null) {
+                variant = NO_TAG_VARIANTS.computeIfAbsent(fluid, f -> new FluidVariant(f, null));
+            }
+            return variant;
         } else {
-            // TODO explore caching fluid variants for non null tags.
-            return new FluidVariant(fluid, nbt);
+            return TAGGED_VARIANTS.intern(new FluidVariant(fluid, nbt), FluidVariant::copyOf);
         }
     }
 
@@ -18,7 +18,9 @@
  */
 package dev.technici4n.moderndynamics.util;
 
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.FriendlyByteBuf;
@@ -33,39 +35,63 @@ import org.slf4j.LoggerFactory;
 
 public final class ItemVariant {
     private static final Logger LOG = LoggerFactory.getLogger(ItemVariant.class);
+    /**
+     * Variants are canonicalized: tagless variants are cached per item, and tagged variants are interned weakly.
+     * Equal variants are therefore usually the same instance, which makes map lookups succeed on the == check.
+     */
+    private static final Map<Item, ItemVariant> NO_TAG_VARIANTS = new ConcurrentHashMap<>();
+    private static final WeakInterner<ItemVariant> TAGGED_VARIANTS = new WeakInterner<>();
+
     private final Item item;
     private final @Nullable CompoundTag nbt;
     private final @Nullable CompoundTag attachments;
     private final int hashCode;
 
-    public ItemVariant(Item item, @Nullable CompoundTag nbt, @Nullable CompoundTag attachmentsNbt) {
+    private ItemVariant(Item item, @Nullable CompoundTag nbt, @Nullable CompoundTag attachmentsNbt) {
         this.item = item;
-        this.nbt = nbt == null ? null : nbt.copy(); // defensive copy
-        this.attachments = attachmentsNbt == null ? null : attachmentsNbt.copy(); // defensive copy
+        this.nbt = nbt;
+        this.attachments = attachmentsNbt;
         this.hashCode = Objects.hash(item, nbt, attachmentsNbt);
     }
 
+    private static ItemVariant copyOf(ItemVariant probe) {
+        // defensive copies, the probe still references the caller's tags
+        return new ItemVariant(
+                probe.item,
+                probe.nbt == null ? null : probe.nbt.copy(),
+                probe.attachments == null ? null : probe.attachments.copy());
+    }
+
     public static ItemVariant blank() {
         return of(Items.AIR);
     }
 
     public static ItemVariant of(ItemStack stack) {
+        // Most stacks don't have attachments, don't build an empty compound for them.
         return of(
                 stack.getItem(),
                 stack.getTag(),
-                stack.serializeAttachments());
+                stack.hasAttachments() ? stack.serializeAttachments() : null);
     }
 
     public static ItemVariant of(ItemLike item, @Nullable CompoundTag nbt, @Nullable CompoundTag attachments) {
-        return new ItemVariant(item.asItem(), nbt, attachments);
+        if (nbt == null && attachments == null) {
+            return of(item);
+        }
+        return TAGGED_VARIANTS.intern(new ItemVariant(item.asItem(), nbt, attachments), ItemVariant::copyOf);
     }
 
     public static ItemVariant of(ItemLike item, @Nullable CompoundTag nbt) {
-        return new ItemVariant(item.asItem(), nbt, null);
+        return of(item, nbt, null);
     }
 
     public static ItemVariant of(ItemLike item) {
-        return new ItemVariant(item.asItem(), null, null);
+        Item asItem = item.asItem();
+        var variant = NO_TAG_VARIANTS.get(asItem);
+        if (variant == null) {
+            variant = NO_TAG_VARIANTS.computeIfAbsent(asItem, i -> new ItemVariant(i, null, null));
+        }
+        return variant;
     }
 
     public CompoundTag toNbt() {
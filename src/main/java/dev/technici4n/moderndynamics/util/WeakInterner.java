@@ -0,0 +1,45 @@
+/*
+ * Modern Dynamics
+ * Copyright (C) 2021 shartte & Technici4n
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package dev.technici4n.moderndynamics.util;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Weak interning pool: equal values are canonicalized to the same instance, without keeping them alive.
+ */
+final class WeakInterner<T> {
+    private final WeakHashMap<T, WeakReference<T>> pool = new WeakHashMap<>();
+
+    /**
+     * Return the canonical instance equal to the probe. If there is none,
+     * the factory creates it from the probe, which is never stored itself.
+     */
+    synchronized T intern(T probe, UnaryOperator<T> factory) {
+        var reference = pool.get(probe);
+        T canonical = reference == null ? null : reference.get();
+        if (canonical == null) {
+            canonical = factory.apply(probe);
+            pool.put(canonical, new WeakReference<>(canonical));
+        }
+        return canonical;
+    }
+
+}